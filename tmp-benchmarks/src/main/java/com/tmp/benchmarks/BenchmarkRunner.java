@@ -0,0 +1,33 @@
+package com.tmp.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行所有基准测试，结果以JSON格式写入文件，用于比较不同版本之间的性能
+ * <pre>
+ * java -jar tmp-benchmarks/target/benchmarks.jar [结果文件] [基准测试的正则]
+ * </pre>
+ * 结果文件默认为 jmh-result.json，可用 https://jmh.morethan.io 查看、对比.
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+
+        String result = (args.length > 0) ? args[0] : DEFAULT_RESULT;
+        String include = (args.length > 1) ? args[1] : BenchmarkRunner.class.getPackage().getName() + ".*";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,155 @@
+package com.tmp.benchmarks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import com.google.common.collect.Maps;
+import com.tmp.benchmarks.model.BenchAccount;
+import com.tmp.benchmarks.model.BenchGroup;
+import com.tmp.benchmarks.model.BenchPerson;
+import com.tmp.jpa.data.DynamicSpecifications;
+import com.tmp.jpa.data.LinkType;
+import com.tmp.jpa.data.SearchFilter;
+
+/**
+ * DynamicSpecifications.bySearchFilter：基于内存数据库H2的EntityManager
+ * <ul>
+ * <li>toPredicate：只生成where条件，不执行sql</li>
+ * <li>query：生成条件并执行查询</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicSpecificationsBenchmark {
+
+    private static final int ROWS = 100;
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    private Collection<SearchFilter> filters;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan(BenchPerson.class.getPackage().getName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+        insertRows();
+
+        Map<String, Object> searchParams = Maps.newHashMap();
+        searchParams.put("LIKE_name", "name");
+        searchParams.put("EQ_account.username", "user1");
+        searchParams.put("EQ_groups.type", "admin");
+        searchParams.put("GTE_age", "18");
+        filters = SearchFilter.parse(searchParams).values();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        entityManager.close();
+        factoryBean.destroy();
+    }
+
+    @Benchmark
+    public Predicate toPredicate() {
+
+        Specification<BenchPerson> spec = DynamicSpecifications.bySearchFilter(filters, LinkType.and, BenchPerson.class);
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BenchPerson> query = builder.createQuery(BenchPerson.class);
+        Root<BenchPerson> root = query.from(BenchPerson.class);
+        return spec.toPredicate(root, query, builder);
+    }
+
+    @Benchmark
+    public List<BenchPerson> query() {
+
+        Specification<BenchPerson> spec = DynamicSpecifications.bySearchFilter(filters, LinkType.and, BenchPerson.class);
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BenchPerson> query = builder.createQuery(BenchPerson.class);
+        Root<BenchPerson> root = query.from(BenchPerson.class);
+        spec.toPredicate(root, query, builder);
+
+        List<BenchPerson> result = entityManager.createQuery(query).setMaxResults(10).getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    private void insertRows() {
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < ROWS; i++) {
+            BenchAccount account = new BenchAccount();
+            account.setId("a" + i);
+            account.setUsername("user" + (i % 10));
+            account.setPassword("password");
+            entityManager.persist(account);
+
+            BenchPerson person = new BenchPerson();
+            person.setId("p" + i);
+            person.setName("name" + i);
+            person.setAge(i % 80);
+            person.setAccount(account);
+
+            BenchGroup group = new BenchGroup();
+            group.setId("g" + i);
+            group.setName("group" + i);
+            group.setCode("code" + i);
+            group.setType((i % 2 == 0) ? "admin" : "user");
+            entityManager.persist(group);
+            person.getGroups().add(group);
+
+            entityManager.persist(person);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+}
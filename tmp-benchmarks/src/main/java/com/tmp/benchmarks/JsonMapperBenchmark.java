@@ -0,0 +1,74 @@
+package com.tmp.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tmp.util.JsonMapperUtil;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * JsonMapperUtil.toJ / fromJ：下划线风格的序列化、反序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMapperBenchmark {
+
+    private Sample sample;
+    private String json;
+
+    @Setup
+    public void setup() {
+
+        sample = new Sample();
+        sample.setUserName("zhangsan");
+        sample.setRealName("张三");
+        sample.setAge(30);
+        sample.setMobileNo("13800138000");
+        sample.setLastLoginDate(LocalDateTime.of(2019, 1, 1, 12, 30, 0));
+        sample.setTags(Arrays.asList("admin", "user", "guest"));
+
+        json = JsonMapperUtil.toJ(sample);
+    }
+
+    @Benchmark
+    public String toJ() {
+
+        return JsonMapperUtil.toJ(sample);
+    }
+
+    @Benchmark
+    public Sample fromJ() {
+
+        return JsonMapperUtil.fromJ(json, Sample.class);
+    }
+
+    @Getter
+    @Setter
+    public static class Sample {
+        private String userName;
+        private String realName;
+        private Integer age;
+        private String mobileNo;
+        private LocalDateTime lastLoginDate;
+        private List<String> tags;
+    }
+}
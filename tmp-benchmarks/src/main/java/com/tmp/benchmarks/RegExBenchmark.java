@@ -0,0 +1,69 @@
+package com.tmp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.tmp.util.RegExUtils;
+
+/**
+ * RegExUtils的校验方法
+ * <p>
+ * legacy*是原来每次调用String.matches、重新编译正则的实现，作为对比的基准.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegExBenchmark {
+
+    /**
+     * 表单中常见的输入：合法的、不合法的
+     */
+    @Param({"13812345678", "-12345.678", "zhang_san01", "abc12345x"})
+    private String input;
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+
+        bh.consume(input.matches("^[+-]?\\d+$"));
+        bh.consume(input.matches("^[+-]?\\d+(\\.\\d+$)?"));
+        bh.consume(input.matches("[\\w]{4,}"));
+        bh.consume(input.matches("^1[\\d]{10}$"));
+        bh.consume(input.matches("^((1[0-9][0-9])|(15[^4,\\D])|(18[0,5-9]))\\d{8}$"));
+    }
+
+    @Benchmark
+    public void scanner(Blackhole bh) {
+
+        bh.consume(RegExUtils.isInteger(input));
+        bh.consume(RegExUtils.isDouble(input));
+        bh.consume(RegExUtils.isSafe(input));
+        bh.consume(RegExUtils.isPhoneNumber(input));
+        bh.consume(RegExUtils.isMobileNO(input));
+    }
+
+    @Benchmark
+    public boolean legacyEmail() {
+
+        return input.matches("^[-+.\\w]+@\\w+([-.]\\w+)*\\.\\w+([-.]\\w+)*$");
+    }
+
+    @Benchmark
+    public boolean email() {
+
+        return RegExUtils.isEmail(input);
+    }
+}
@@ -0,0 +1,52 @@
+package com.tmp.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.tmp.jpa.data.SearchFilter;
+
+/**
+ * SearchFilter.parse：请求参数解析为查询条件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchFilterBenchmark {
+
+    private Map<String, Object> searchParams;
+
+    @Setup
+    public void setup() {
+
+        searchParams = Maps.newHashMap();
+        searchParams.put("LIKE_name", "张三");
+        searchParams.put("EQ_account.username", "zhangsan");
+        searchParams.put("EQ_groups.type", "admin");
+        searchParams.put("GTE_age", "18");
+        searchParams.put("LT_age", "60");
+        searchParams.put("ISNOTNULL_createDate", null);
+        // 空值会被过滤掉
+        searchParams.put("EQ_cc", "");
+    }
+
+    @Benchmark
+    public Map<String, SearchFilter> parse() {
+
+        return SearchFilter.parse(searchParams);
+    }
+}
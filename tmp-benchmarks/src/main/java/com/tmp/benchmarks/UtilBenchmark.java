@@ -0,0 +1,129 @@
+package com.tmp.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tmp.benchmarks.JsonMapperBenchmark.Sample;
+import com.tmp.util.CachingDateFormatter;
+import com.tmp.util.Collections3;
+import com.tmp.util.DigestUtil;
+import com.tmp.util.EncryptionUtil;
+import com.tmp.util.IdGenerator;
+import com.tmp.util.Reflections;
+import com.tmp.util.XssHtmlFilter;
+
+/**
+ * com.tmp.util中的常用工具
+ * <p>
+ * 每个线程一个实例，CachingDateFormatter等有内部状态的对象不在线程间共享.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    private static final String HTML = "<p class=\"title\" onclick=\"alert(1)\">标题<b>加粗</b>"
+            + "<a href=\"javascript:alert(1)\">链接</a><a href=\"http://www.example.com\" target=\"_blank\">正常链接</a>"
+            + "<script>alert('xss')</script><img src=\"http://www.example.com/a.png\" onerror=\"alert(1)\"/></p>";
+
+    private static final int SAMPLES = 10000;
+
+    private XssHtmlFilter xssHtmlFilter;
+    private CachingDateFormatter dateFormatter;
+    private Sample sample;
+    private List<Sample> samples;
+    private byte[] password;
+    private byte[] salt;
+
+    @Setup
+    public void setup() {
+
+        xssHtmlFilter = XssHtmlFilter.getDefault();
+        dateFormatter = new CachingDateFormatter("yyyy-MM-dd HH:mm:ss.SSS");
+
+        sample = new Sample();
+        sample.setUserName("zhangsan");
+
+        samples = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            Sample s = new Sample();
+            s.setUserName("user" + i);
+            samples.add(s);
+        }
+
+        password = "P@ssw0rd".getBytes(StandardCharsets.UTF_8);
+        salt = DigestUtil.generateSalt(8);
+    }
+
+    @Benchmark
+    public String xssFilter() {
+
+        return xssHtmlFilter.filter(HTML);
+    }
+
+    @Benchmark
+    public String uuid2() {
+
+        return IdGenerator.uuid2();
+    }
+
+    @Benchmark
+    public String uuid7() {
+
+        return IdGenerator.uuid7();
+    }
+
+    @Benchmark
+    public long snowflake() {
+
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    public String formatDate() {
+
+        return dateFormatter.format(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public Object invokeGetter() {
+
+        return Reflections.invokeGetter(sample, "userName");
+    }
+
+    /**
+     * 从一万个对象中提取属性
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List extractToList() {
+
+        return Collections3.extractToList(samples, "userName");
+    }
+
+    /**
+     * 与密码的散列方式一致：加盐、迭代1024次
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] sha1With1024Iterations() {
+
+        return DigestUtil.sha1(password, salt, EncryptionUtil.HASH_INTERATIONS);
+    }
+}
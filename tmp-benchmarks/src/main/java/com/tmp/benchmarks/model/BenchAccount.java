@@ -0,0 +1,29 @@
+package com.tmp.benchmarks.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.tmp.jpa.domain.JpaEntity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 基准测试用的账号
+ */
+@Table(name = "bench_account")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class BenchAccount extends JpaEntity<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+    private String username;
+    private String password;
+}
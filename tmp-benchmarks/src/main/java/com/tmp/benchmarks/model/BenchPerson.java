@@ -0,0 +1,44 @@
+package com.tmp.benchmarks.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import com.tmp.jpa.domain.JpaEntity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 基准测试用的实体，结构与DynamicSpecifications文档中的例子一致：
+ * Person{ String name; Account account; List《Group》 groups;}
+ */
+@Table(name = "bench_person")
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+public class BenchPerson extends JpaEntity<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+    private String name;
+    private Integer age;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private BenchAccount account;
+
+    @OneToMany(fetch = FetchType.LAZY)
+    @JoinColumn(name = "person_id")
+    private List<BenchGroup> groups = new ArrayList<>();
+}
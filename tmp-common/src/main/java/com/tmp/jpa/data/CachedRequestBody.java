@@ -0,0 +1,28 @@
+package com.tmp.jpa.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 已缓存请求体的Request，请求体可以重复读取
+ * <p>
+ * 由tmp-web的HttpServletRequestReplacedFilter包装请求时实现，{@link Servlets}读取请求体时优先使用.
+ */
+public interface CachedRequestBody {
+
+    /**
+     * 请求体的只读视图，每次调用返回新的ByteBuffer，position为0
+     *
+     * @return
+     * @throws IOException 读取请求失败
+     */
+    ByteBuffer getBody() throws IOException;
+
+    /**
+     * 请求体的字节数
+     *
+     * @return
+     * @throws IOException 读取请求失败
+     */
+    long getBodyLength() throws IOException;
+}
@@ -0,0 +1,27 @@
+package com.tmp.jpa.data;
+
+/**
+ * 分页查询时总数的计算方式
+ */
+public enum CountStrategy {
+
+    /**
+     * 每次都精确查询总数
+     */
+    EXACT,
+
+    /**
+     * 相同的查询条件在一段时间内复用上一次查询的总数，总数可能不是最新的
+     */
+    CACHED,
+
+    /**
+     * 最多数到上限，超过上限时总数为上限，表示"超过N条"
+     */
+    CAPPED,
+
+    /**
+     * 不查询总数，只判断是否有下一页；结果是Slice，没有Page，只用于findSlice
+     */
+    NONE
+}
@@ -0,0 +1,59 @@
+package com.tmp.jpa.data;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * 按{@link CountStrategy}计算总数的分页结果
+ * <p>
+ * 总数不精确时(缓存、上限)，{@link #isTotalExact()}为false：
+ * <ul>
+ * <li>CACHED：总数来自缓存，可能不是最新的</li>
+ * <li>CAPPED：实际数量超过上限，总数为上限</li>
+ * </ul>
+ * 不查询总数(NONE)时没有总数，结果是Slice，不是CountedPage.
+ *
+ * @param <T> 实体对象
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CountStrategy countStrategy;
+    private final boolean totalExact;
+    private final boolean hasNext;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, boolean hasNext,
+                       CountStrategy countStrategy, boolean totalExact) {
+        super(content, pageable, total);
+        this.countStrategy = countStrategy;
+        this.totalExact = totalExact;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * 总数的计算方式
+     */
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * 总数是否精确
+     */
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public boolean isLast() {
+        return !hasNext;
+    }
+}
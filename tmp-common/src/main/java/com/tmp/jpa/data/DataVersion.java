@@ -0,0 +1,50 @@
+package com.tmp.jpa.data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 满足查询条件的数据的版本：条数 + 最大的最后修改时间
+ * <p>
+ * 新增、修改会改变最后修改时间，删除会改变条数，两者都不变时可以认为查询结果没有变化.
+ * 用于条件GET，见SimpleRestController.checkNotModified.
+ */
+public final class DataVersion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long count;
+    private final LocalDateTime lastModifiedDate;
+
+    public DataVersion(long count, LocalDateTime lastModifiedDate) {
+        this.count = count;
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    /**
+     * 满足条件的条数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 最大的最后修改时间，没有数据或实体没有最后修改时间时为null
+     */
+    public LocalDateTime getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    /**
+     * 最大的最后修改时间的毫秒数(系统默认时区)，没有时返回-1
+     */
+    public long getLastModifiedMillis() {
+        return lastModifiedDate == null ? -1 : lastModifiedDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public String toString() {
+        return "DataVersion{count=" + count + ", lastModifiedDate=" + lastModifiedDate + "}";
+    }
+}
@@ -1,34 +1,42 @@
 package com.tmp.jpa.data;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
-import javax.persistence.criteria.From;
-import javax.persistence.criteria.JoinType;
-import javax.persistence.criteria.ListJoin;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
-import org.apache.commons.lang3.StringUtils;
-import org.hibernate.service.spi.ServiceException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
-import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.tmp.jpa.domain.Entity;
 import com.tmp.util.Collections3;
-import com.tmp.util.JavaBeanUtil;
 
 /**
  * 动态拼查询条件
+ * <p>
+ * 属性路径、关联方式等解析结果以执行计划的形式缓存，见{@link SpecificationPlan}
  */
 public class DynamicSpecifications {
 
-    private static final String SEPARATOR_CHARS = ".";
+    // 执行计划的最大缓存数量
+    private static final int MAX_PLANS = 1024;
+
+    private static final Cache<SpecificationPlan.Key, SpecificationPlan> PLANS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PLANS)
+            .build();
+
+    private static final Comparator<SearchFilter> FILTER_ORDER = Comparator
+            .comparing((SearchFilter filter) -> filter.fieldName)
+            .thenComparing(filter -> filter.operator);
 
     public static <T> Specification<T> bySearchFilter(final Collection<SearchFilter> filters
             , LinkType link
@@ -70,100 +78,17 @@ public class DynamicSpecifications {
             , final Class<T> classz
             , List<Predicate> conditions) {
 
+        // 条件的顺序固定下来，相同的条件组合得到相同的执行计划、相同的sql
+        final SearchFilter[] ordered = sort(filters);
+        final String signature = signature(ordered);
+
         return (Specification<T>) (root, query, builder) -> {
             // where
-            if (Collections3.isNotEmpty(filters)) {
+            if (ordered.length > 0) {
 
                 // 所有的条件
-                List<Predicate> predicates = Lists.newArrayList();
-                // left join 关联表。如：key=[tos.partyTo,xxxxxx]
-                Map<String, Path> leftJoinMap = Maps.newHashMap();
-
-                for (SearchFilter filter : filters) {
-
-                    // 属性路径
-                    // nested path translate, 如Task的名为"user.name"的filedName, 转换为Task.user.name属性
-                    String[] names = StringUtils.split(filter.fieldName, SEPARATOR_CHARS);
-                    Path expression = root; //
-                    String nested = ""; // 记录条件的属性路径
-                    for (String name : names) {
-
-                        nested = (StringUtils.isBlank(nested) ? "" : nested + ".") + name;
-                        // 如果存在left join关联，则直接取
-                        if (leftJoinMap.containsKey(name)) {
-                            expression = leftJoinMap.get(name);
-                            continue;
-                        }
-                        //
-                        Path currPage = expression.get(name);
-                        if ((currPage.getJavaType() == List.class)) {
-                            // 如果是List关联表，则重新通过join方式处理
-                            if (expression instanceof Root) {
-                                Root root2 = (Root) expression;
-                                expression = root2.join(root2.getModel().getList(name), JoinType.LEFT);
-
-                            } else if (expression instanceof ListJoin) {
-                                expression = ((ListJoin) expression).joinList(name, JoinType.LEFT);
-
-                            } else {
-                                // 父级是其他
-                                expression = ((From) expression).join(name, JoinType.LEFT);
-                            }
-                            // 缓存
-                            leftJoinMap.put(nested, expression);
-
-                        } else if (Entity.class.isAssignableFrom(currPage.getJavaType())) {
-                            // 如果是单关联表，则重新通过join方式处理。如果继承于DomainEntity则为外键关联表
-                            expression = ((From) expression).join(name, JoinType.LEFT);
-                            // 缓存
-                            leftJoinMap.put(nested, expression);
-
-                        } else {
-                            expression = currPage;
-                        }
-                    }
-
-                    // 有值条件
-                    if (filter.value != null) {
-                        Optional optional = JavaBeanUtil.convertObjectFromObject(filter.value, expression.getJavaType());
-                        if (!optional.isPresent()) {// 判断数据转化是否成功，特别是枚举类型、数值类型
-                            throw new ServiceException("查询条件数据不正确");
-                        }
-                        switch (filter.operator) {
-                            case EQ:
-                                predicates.add(builder.equal(expression, optional.get()));
-                                break;
-                            case LIKE:
-                                predicates.add(builder.like(expression, "%" + filter.value + "%"));
-                                break;
-                            case GT:
-                                predicates.add(builder.greaterThan(expression, (Comparable) optional.get()));
-                                break;
-                            case LT:
-                                predicates.add(builder.lessThan(expression, (Comparable) optional.get()));
-                                break;
-                            case GTE:
-                                predicates.add(builder.greaterThanOrEqualTo(expression, (Comparable) optional.get()));
-                                break;
-                            case LTE:
-                                predicates.add(builder.lessThanOrEqualTo(expression, (Comparable) optional.get()));
-                                break;
-                            case IN:
-                                predicates.add(builder.in(expression).value(optional.get()));
-                                break;
-                        }
-                    } else {
-                        // 无值条件
-                        switch (filter.operator) {
-                            case ISNULL:
-                                predicates.add(builder.isNull(expression));
-                                break;
-                            case ISNOTNULL:
-                                predicates.add(builder.isNotNull(expression));
-                                break;
-                        }
-                    }
-                }
+                SpecificationPlan plan = getPlan(root, ordered, signature);
+                List<Predicate> predicates = plan.toPredicates(ordered, root, builder);
 
                 // 添加外部条件
                 if (Collections3.isNotEmpty(conditions)) {
@@ -193,5 +118,111 @@ public class DynamicSpecifications {
         };
     }
 
+    /**
+     * 键集分页的条件 <br>
+     * 排序为 a DESC, id ASC 时，生成 (a &lt; ? OR a IS NULL) OR (a = ? AND id &gt; ?)。
+     * null的比较与MySQL一致：升序时null在最前，降序时null在最后
+     *
+     * @param sort   排序，最后一个为主键，见{@link KeysetCursor#withTieBreaker(Sort, String)}
+     * @param cursor 上一页的游标，为null时(第一页)不加条件
+     * @return
+     */
+    public static <T> Specification<T> byKeyset(final Sort sort, final KeysetCursor cursor) {
+
+        if (cursor == null) {
+            return (Specification<T>) (root, query, builder) -> null;
+        }
+
+        cursor.checkSort(sort);
+        final List<Sort.Order> orders = Lists.newArrayList(sort);
+
+        return (Specification<T>) (root, query, builder) -> {
+
+            int n = orders.size();
+            Path<?>[] paths = new Path<?>[n];
+            Object[] values = new Object[n];
+            for (int i = 0; i < n; i++) {
+                paths[i] = root.get(orders.get(i).getProperty());
+                values[i] = cursor.getValue(i, paths[i].getJavaType());
+            }
+
+            List<Predicate> seeks = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Predicate after = after(builder, paths[i], values[i], orders.get(i).isDescending());
+                if (after == null) {
+                    continue;
+                }
+                // 前面的排序字段都相等
+                List<Predicate> ands = new ArrayList<>(i + 1);
+                for (int j = 0; j < i; j++) {
+                    ands.add(values[j] == null ? builder.isNull(paths[j]) : builder.equal(paths[j], values[j]));
+                }
+                ands.add(after);
+                seeks.add(ands.size() == 1 ? after : builder.and(ands.toArray(new Predicate[ands.size()])));
+            }
+
+            // 已经是最后一行
+            if (seeks.isEmpty()) {
+                return builder.disjunction();
+            }
+            return builder.or(seeks.toArray(new Predicate[seeks.size()]));
+        };
+    }
+
+    /**
+     * 排序在value之后的条件，没有时返回null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate after(CriteriaBuilder builder, Path path, Object value, boolean descending) {
+
+        if (value == null) {
+            // 升序时null在最前，之后是所有非null；降序时null在最后，之后没有数据
+            return descending ? null : builder.isNotNull(path);
+        }
+        if (descending) {
+            return builder.or(builder.lessThan(path, (Comparable) value), builder.isNull(path));
+        }
+        return builder.greaterThan(path, (Comparable) value);
+    }
+
+    /**
+     * 取得执行计划，没有时根据实体的元模型解析并缓存
+     */
+    private static SpecificationPlan getPlan(Root<?> root, SearchFilter[] filters, String signature) {
+
+        SpecificationPlan.Key key = new SpecificationPlan.Key(root.getJavaType(), signature);
+        SpecificationPlan plan = PLANS.getIfPresent(key);
+        if (plan == null) {
+            plan = SpecificationPlan.compile(root.getModel(), filters);
+            PLANS.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 按属性路径、操作符排序
+     */
+    private static SearchFilter[] sort(Collection<SearchFilter> filters) {
+
+        if (Collections3.isEmpty(filters)) {
+            return new SearchFilter[0];
+        }
+
+        SearchFilter[] ordered = filters.toArray(new SearchFilter[filters.size()]);
+        Arrays.sort(ordered, FILTER_ORDER);
+        return ordered;
+    }
+
+    /**
+     * 条件组合的签名，如：EQ_account.username,LIKE_name
+     */
+    private static String signature(SearchFilter[] filters) {
+
+        StringBuilder builder = new StringBuilder();
+        for (SearchFilter filter : filters) {
+            builder.append(filter.operator).append('_').append(filter.fieldName).append(',');
+        }
+        return builder.toString();
+    }
 
 }
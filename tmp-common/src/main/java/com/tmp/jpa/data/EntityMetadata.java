@@ -0,0 +1,197 @@
+package com.tmp.jpa.data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.tmp.util.JavaBeanUtil;
+
+/**
+ * 实体的元数据
+ * <p>
+ * 在服务创建时根据实体类的字段及JPA注解解析一次，之后只读：
+ * 主键属性、可排序的属性(实体自身的基本类型属性)、有索引的属性、属性对应的列名.
+ * 列名与Hibernate默认的命名策略一致：@Column(name)优先，否则驼峰转下划线.
+ */
+public final class EntityMetadata {
+
+    private final Class<?> entityClass;
+    private final String idAttribute;
+    // 属性名 -> 列名，只包括基本类型属性
+    private final Map<String, String> columns;
+    private final Set<String> indexedAttributes;
+
+    private EntityMetadata(Class<?> entityClass, String idAttribute, Map<String, String> columns, Set<String> indexedAttributes) {
+        this.entityClass = entityClass;
+        this.idAttribute = idAttribute;
+        this.columns = Collections.unmodifiableMap(columns);
+        this.indexedAttributes = Collections.unmodifiableSet(indexedAttributes);
+    }
+
+    /**
+     * 解析实体类
+     *
+     * @param entityClass 实体类型
+     * @return
+     */
+    public static EntityMetadata of(Class<?> entityClass) {
+
+        String idAttribute = null;
+        Map<String, String> columns = new LinkedHashMap<>();
+        Set<String> indexed = new LinkedHashSet<>();
+
+        // 包括父类(@MappedSuperclass)的字段
+        for (Class<?> c : ClassUtils.hierarchy(entityClass)) {
+            if (c == Object.class) {
+                continue;
+            }
+            for (Field field : c.getDeclaredFields()) {
+                if (!isPersistent(field)) {
+                    continue;
+                }
+                String name = field.getName();
+                if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class)) {
+                    idAttribute = name;
+                    indexed.add(name);
+                }
+                if (!isBasic(field.getType())) {
+                    continue;
+                }
+                Column column = field.getAnnotation(Column.class);
+                columns.putIfAbsent(name, (column != null && StringUtils.isNotBlank(column.name()))
+                        ? column.name() : JavaBeanUtil.toUnderlineString(name));
+                if (column != null && column.unique()) {
+                    indexed.add(name);
+                }
+            }
+        }
+
+        // @Table上声明的索引、唯一约束，只取第一列(最左前缀)
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table != null) {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            columns.forEach((attribute, column) -> attributes.put(column.toLowerCase(), attribute));
+            for (Index index : table.indexes()) {
+                String first = StringUtils.substringBefore(index.columnList(), ",").trim();
+                // 去掉排序方向，如"bb desc"
+                first = StringUtils.substringBefore(first, " ").toLowerCase();
+                addIfPresent(indexed, attributes.get(first));
+            }
+            for (UniqueConstraint constraint : table.uniqueConstraints()) {
+                if (constraint.columnNames().length > 0) {
+                    addIfPresent(indexed, attributes.get(constraint.columnNames()[0].toLowerCase()));
+                }
+            }
+        }
+
+        return new EntityMetadata(entityClass, idAttribute, columns, indexed);
+    }
+
+    /**
+     * 实体类型
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * 主键属性名，没有时返回null
+     */
+    public String getIdAttribute() {
+        return idAttribute;
+    }
+
+    /**
+     * 可排序的属性：实体自身的基本类型属性(数值、字符串、时间、枚举等)
+     */
+    public Set<String> getSortableAttributes() {
+        return columns.keySet();
+    }
+
+    /**
+     * 是否为可排序的属性
+     */
+    public boolean isSortable(String attribute) {
+        return columns.containsKey(attribute);
+    }
+
+    /**
+     * 有索引的属性：主键、@Column(unique = true)、@Table中索引或唯一约束的第一列
+     */
+    public Set<String> getIndexedAttributes() {
+        return indexedAttributes;
+    }
+
+    /**
+     * 是否为有索引的属性
+     */
+    public boolean isIndexed(String attribute) {
+        return indexedAttributes.contains(attribute);
+    }
+
+    /**
+     * 属性对应的列名，不是基本类型属性时返回null
+     */
+    public String getColumnName(String attribute) {
+        return columns.get(attribute);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMetadata{entityClass=" + entityClass.getName()
+                + ", idAttribute=" + idAttribute
+                + ", sortable=" + columns.keySet()
+                + ", indexed=" + indexedAttributes + "}";
+    }
+
+    // ====================
+
+    private static boolean isPersistent(Field field) {
+
+        int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers)
+                && !Modifier.isTransient(modifiers)
+                && !field.isSynthetic()
+                && !field.isAnnotationPresent(Transient.class);
+    }
+
+    private static boolean isBasic(Class<?> type) {
+
+        if (type.isPrimitive() || type.isEnum() || ClassUtils.isPrimitiveWrapper(type)) {
+            return true;
+        }
+        if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return false;
+        }
+        return type == String.class
+                || Number.class.isAssignableFrom(type)
+                || Temporal.class.isAssignableFrom(type)
+                || Date.class.isAssignableFrom(type)
+                || type == UUID.class;
+    }
+
+    private static void addIfPresent(Set<String> set, String value) {
+        if (value != null) {
+            set.add(value);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.tmp.jpa.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.net.HttpHeaders;
+
+/**
+ * 文件下载的实现，见{@link Servlets#sendFile(HttpServletRequest, HttpServletResponse, Path, String)}
+ * <p>
+ * 按以下顺序选择发送方式，都不经过堆上的byte[]缓冲整个文件：
+ * <ul>
+ * <li>容器支持sendfile(Tomcat NIO)且文件较大时，交给容器用sendfile发送</li>
+ * <li>小文件内存映射后缓存，热点文件不再读盘</li>
+ * <li>其他情况用FileChannel.transferTo写入响应</li>
+ * </ul>
+ */
+final class FileDownloadSupport {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小时不使用sendfile，与Tomcat默认的sendfileSize一致
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    // 内存映射缓存的单个文件上限、总大小上限
+    private static final long MAPPED_MAX_FILE_SIZE = 256 * 1024;
+    private static final long MAPPED_MAX_TOTAL_SIZE = 64 * 1024 * 1024;
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    // 路径:大小:修改时间 -> 映射的文件内容，文件修改后key不同
+    private static final Cache<String, ByteBuffer> MAPPED = CacheBuilder.newBuilder()
+            .maximumWeight(MAPPED_MAX_TOTAL_SIZE)
+            .weigher((String key, ByteBuffer buffer) -> buffer.capacity())
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private FileDownloadSupport() {
+    }
+
+    static void send(HttpServletRequest request, HttpServletResponse response, Path file, String fileName) throws IOException {
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attributes = null;
+        }
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // If-None-Match优先于If-Modified-Since
+        if (!Servlets.checkIfNoneMatchEtag(request, response, etag)) {
+            return;
+        }
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && !Servlets.checkIfModifiedSince(request, response, lastModified)) {
+            return;
+        }
+
+        Servlets.setEtag(response, etag);
+        Servlets.setLastModifiedHeader(response, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String name = StringUtils.defaultIfBlank(fileName, String.valueOf(file.getFileName()));
+        String contentType = request.getServletContext().getMimeType(name);
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        if (StringUtils.isNotBlank(fileName)) {
+            Servlets.setFileDownloadHeader(request, response, fileName);
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && matchesIfRange(request, etag, lastModified)) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == UNSATISFIABLE) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count <= 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由容器在请求结束后用sendfile发送，不写入响应
+            request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        if (length <= MAPPED_MAX_FILE_SIZE) {
+            ByteBuffer buffer = mapped(file, length, lastModified);
+            buffer.position((int) start).limit((int) (end + 1));
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            while (count > 0) {
+                long n = channel.transferTo(position, count, target);
+                if (n <= 0) {
+                    // 文件在发送过程中被截短
+                    break;
+                }
+                position += n;
+                count -= n;
+            }
+        }
+    }
+
+    /**
+     * 映射的文件内容，每次返回新的视图
+     */
+    private static ByteBuffer mapped(Path file, long length, long lastModified) throws IOException {
+
+        String key = file.toAbsolutePath() + ":" + length + ":" + lastModified;
+        try {
+            return MAPPED.get(key, () -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, length).asReadOnlyBuffer();
+                }
+            }).duplicate();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * If-Range与当前的ETag或最后修改时间一致时才按Range发送部分内容，否则发送整个文件
+     */
+    private static boolean matchesIfRange(HttpServletRequest request, String etag, long lastModified) {
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // 只能用强ETag比较
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析Range，只支持单个范围；多个范围或格式不正确时忽略，返回null
+     *
+     * @return [start, end]，end包括在内；无法满足时返回{@link #UNSATISFIABLE}
+     */
+    private static long[] parseRange(String range, long length) {
+
+        if (!range.startsWith(BYTES_UNIT) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // 最后N个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = length - 1;
+                if (!last.isEmpty()) {
+                    long lastPosition = Long.parseLong(last);
+                    if (lastPosition < start) {
+                        return null;
+                    }
+                    end = Math.min(lastPosition, end);
+                }
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.tmp.jpa.data;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.servlet.ServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tmp.util.JsonMapperRegistry;
+import com.tmp.util.JsonMapperRegistry.Style;
+
+/**
+ * 以流的方式输出json
+ * <p>
+ * 基于Jackson的JsonGenerator，把ResponseResult外层结构、Page的分页信息以及每一行数据依次写入输出流(UTF-8)，
+ * 不在内存中拼出完整的json字符串，适合大数据量的查询、导出.
+ * <pre>
+ * try (JsonStreamWriter writer = JsonStreamWriter.of(response)) {
+ *     writer.writePage(page);
+ * }
+ * </pre>
+ * 输出的结构与ResponseResult一致：{"code":"200","msg":"成功","data":{...}}
+ * <p>
+ * 非线程安全，每次输出创建一个实例.
+ */
+public class JsonStreamWriter implements Closeable, Flushable {
+
+    private static final PropertyNamingStrategy.PropertyNamingStrategyBase SNAKE_CASE = new PropertyNamingStrategy.SnakeCaseStrategy();
+
+    private final JsonGenerator generator;
+    // 每写一行不做flush，由JsonGenerator自身的缓冲区决定何时写出
+    private final ObjectWriter writer;
+    private final boolean snakeCase;
+
+    public JsonStreamWriter(OutputStream out, Style style) throws IOException {
+
+        ObjectWriter styleWriter = JsonMapperRegistry.writer(style);
+        this.writer = styleWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = styleWriter.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        this.snakeCase = (style == Style.SNAKE_CASE);
+    }
+
+    /**
+     * 向response输出utf-8格式的json，属性名为下划线风格
+     *
+     * @param response
+     * @return
+     * @throws IOException
+     */
+    public static JsonStreamWriter of(ServletResponse response) throws IOException {
+
+        return of(response, Style.SNAKE_CASE);
+    }
+
+    /**
+     * 向response输出utf-8格式的json
+     *
+     * @param response
+     * @param style    输出风格
+     * @return
+     * @throws IOException
+     */
+    public static JsonStreamWriter of(ServletResponse response, Style style) throws IOException {
+
+        // 设置服务器端的编码
+        response.setCharacterEncoding("utf-8");
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        return new JsonStreamWriter(response.getOutputStream(), style);
+    }
+
+    /**
+     * 输出ResponseResult
+     *
+     * @param result
+     * @throws IOException
+     */
+    public void writeResult(ResponseResult<?> result) throws IOException {
+
+        writer.writeValue(generator, result);
+    }
+
+    /**
+     * 输出成功的分页结果
+     *
+     * @param page 分页数据
+     * @throws IOException
+     */
+    public void writePage(Slice<?> page) throws IOException {
+
+        writePage(ResponseStatus.SUCCEED, ResponseStatus.SUCCEED.getMessage(), page);
+    }
+
+    /**
+     * 输出分页结果，data中依次为content、分页信息
+     *
+     * @param status 业务状态码
+     * @param msg    业务消息
+     * @param page   分页数据，Slice没有总数等信息
+     * @throws IOException
+     */
+    public void writePage(ResponseStatus status, String msg, Slice<?> page) throws IOException {
+
+        writeHead(status, msg);
+
+        generator.writeFieldName("data");
+        generator.writeStartObject();
+
+        generator.writeFieldName("content");
+        writeArray(page.getContent().iterator());
+
+        if (page instanceof Page) {
+            Page<?> p = (Page<?>) page;
+            generator.writeNumberField(name("totalElements"), p.getTotalElements());
+            generator.writeNumberField(name("totalPages"), p.getTotalPages());
+        }
+        generator.writeNumberField(name("number"), page.getNumber());
+        generator.writeNumberField(name("size"), page.getSize());
+        generator.writeNumberField(name("numberOfElements"), page.getNumberOfElements());
+        generator.writeBooleanField(name("first"), page.isFirst());
+        generator.writeBooleanField(name("last"), page.isLast());
+
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * 输出成功的结果，data为逐行写出的数组
+     *
+     * @param rows 数据行，可以来自数据库的游标、Stream等，不要求全部在内存中
+     * @throws IOException
+     */
+    public void writeRows(Iterator<?> rows) throws IOException {
+
+        writeRows(ResponseStatus.SUCCEED, ResponseStatus.SUCCEED.getMessage(), rows);
+    }
+
+    /**
+     * 输出结果，data为逐行写出的数组
+     *
+     * @param status 业务状态码
+     * @param msg    业务消息
+     * @param rows   数据行
+     * @throws IOException
+     */
+    public void writeRows(ResponseStatus status, String msg, Iterator<?> rows) throws IOException {
+
+        writeHead(status, msg);
+        generator.writeFieldName("data");
+        writeArray(rows);
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        generator.close();
+    }
+
+    // ====================
+
+    private void writeHead(ResponseStatus status, String msg) throws IOException {
+
+        generator.writeStartObject();
+        generator.writeStringField("code", status.toString());
+        // 与ResponseResult一样，不输出空的msg
+        if (StringUtils.isNotEmpty(msg)) {
+            generator.writeStringField("msg", msg);
+        }
+    }
+
+    private void writeArray(Iterator<?> rows) throws IOException {
+
+        generator.writeStartArray();
+        while (rows.hasNext()) {
+            writer.writeValue(generator, rows.next());
+        }
+        generator.writeEndArray();
+    }
+
+    private String name(String propertyName) {
+
+        return snakeCase ? SNAKE_CASE.translate(propertyName) : propertyName;
+    }
+}
@@ -0,0 +1,272 @@
+package com.tmp.jpa.data;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.service.spi.ServiceException;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
+import com.tmp.util.EncodeUtil;
+import com.tmp.util.JavaBeanUtil;
+import com.tmp.util.JsonMapperRegistry;
+import com.tmp.util.JsonMapperRegistry.Style;
+import com.tmp.util.Reflections;
+
+/**
+ * 键集分页(keyset/seek)的游标
+ * <p>
+ * 记录上一页最后一行的排序字段值(最后一个总是主键)，下一页通过
+ * (sort &gt; ? OR (sort = ? AND id &gt; ?)) 的条件定位，不使用OFFSET、不查询总数，
+ * 每一页的耗时与页码无关，适合无限滚动、导出.
+ * <p>
+ * 对外以URL安全的Base64字符串传递，见{@link #encode()}、{@link #decode(String)}.
+ * 排序字段只支持实体自身的属性，不支持关联对象的属性.
+ *
+ * @see DynamicSpecifications#byKeyset(Sort, KeysetCursor)
+ */
+public final class KeysetCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DESC_PREFIX = "-";
+
+    /**
+     * 排序字段，降序的以"-"开头，如：["-bb","aa"]
+     */
+    private final List<String> orders;
+
+    /**
+     * 排序字段的值，null表示数据库中的值为null
+     */
+    private final List<String> values;
+
+    @JsonCreator
+    private KeysetCursor(@JsonProperty("o") List<String> orders, @JsonProperty("v") List<String> values) {
+        this.orders = orders;
+        this.values = values;
+    }
+
+    /**
+     * 在排序的最后追加主键升序，保证排序唯一。排序中已有主键时不追加
+     *
+     * @param sort   排序
+     * @param idName 主键属性名
+     * @return
+     */
+    public static Sort withTieBreaker(Sort sort, String idName) {
+
+        if (sort == null || sort.isUnsorted()) {
+            return Sort.by(Sort.Order.asc(idName));
+        }
+        if (sort.getOrderFor(idName) != null) {
+            return sort;
+        }
+        return sort.and(Sort.by(Sort.Order.asc(idName)));
+    }
+
+    /**
+     * 根据一行数据生成游标
+     *
+     * @param sort 排序，包括主键，见{@link #withTieBreaker(Sort, String)}
+     * @param row  当前页的最后一行
+     * @return
+     */
+    public static KeysetCursor of(Sort sort, Object row) {
+
+        List<String> orders = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String property = checkProperty(order.getProperty());
+            orders.add(order.isDescending() ? DESC_PREFIX + property : property);
+            values.add(format(Reflections.getFieldValue(row, property)));
+        }
+        return new KeysetCursor(orders, values);
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @param token 游标字符串，为空时返回null(第一页)
+     * @return
+     */
+    public static KeysetCursor decode(String token) {
+
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+
+        try {
+            KeysetCursor cursor = JsonMapperRegistry.reader(Style.NON_EMPTY, KeysetCursor.class)
+                    .readValue(EncodeUtil.decodeBase64UrlSafe(token));
+            if (cursor.orders == null || cursor.values == null || cursor.orders.size() != cursor.values.size()) {
+                throw new ServiceException("分页游标不正确");
+            }
+            return cursor;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ServiceException("分页游标不正确", e);
+        }
+    }
+
+    /**
+     * 编码为URL安全的字符串
+     *
+     * @return
+     */
+    public String encode() {
+
+        try {
+            return EncodeUtil.encodeBase64UrlSafe(JsonMapperRegistry.writer(Style.NON_EMPTY).writeValueAsBytes(this));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @JsonProperty("o")
+    List<String> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    @JsonProperty("v")
+    List<String> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * 校验游标与排序一致：字段、方向、顺序都相同
+     */
+    void checkSort(Sort sort) {
+
+        int i = 0;
+        for (Sort.Order order : sort) {
+            String expected = order.isDescending() ? DESC_PREFIX + order.getProperty() : order.getProperty();
+            if (i >= orders.size() || !expected.equals(orders.get(i))) {
+                throw new ServiceException("分页游标与排序不一致");
+            }
+            i++;
+        }
+        if (i != orders.size()) {
+            throw new ServiceException("分页游标与排序不一致");
+        }
+    }
+
+    /**
+     * 第i个排序字段的值，转换为属性的类型
+     *
+     * @param i        排序字段的下标
+     * @param javaType 属性的类型
+     * @return 数据库中的值为null时返回null
+     */
+    Object getValue(int i, Class<?> javaType) {
+
+        String value = values.get(i);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return parse(value, ClassUtils.resolvePrimitiveIfNecessary(javaType));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ServiceException("分页游标不正确", e);
+        }
+    }
+
+    // ====================
+
+    private static String checkProperty(String property) {
+
+        if (StringUtils.contains(property, '.')) {
+            throw new ServiceException("键集分页不支持关联对象的排序字段：" + property);
+        }
+        return property;
+    }
+
+    /**
+     * 属性值转为字符串，时间类型使用ISO格式，保留毫秒、纳秒
+     */
+    private static String format(Object value) {
+
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        return value.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parse(String value, Class<?> javaType) {
+
+        if (javaType == String.class) {
+            return value;
+        }
+        if (javaType.isEnum()) {
+            return Enum.valueOf((Class<Enum>) javaType, value);
+        }
+        if (Number.class.isAssignableFrom(javaType)) {
+            return NumberUtils.parseNumber(value, (Class<Number>) javaType);
+        }
+        if (javaType == Boolean.class) {
+            return Boolean.valueOf(value);
+        }
+        if (javaType == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        if (javaType == LocalDate.class) {
+            return LocalDate.parse(value);
+        }
+        if (javaType == LocalTime.class) {
+            return LocalTime.parse(value);
+        }
+        if (javaType == Instant.class) {
+            return Instant.parse(value);
+        }
+        if (javaType == OffsetDateTime.class) {
+            return OffsetDateTime.parse(value);
+        }
+        if (javaType == ZonedDateTime.class) {
+            return ZonedDateTime.parse(value);
+        }
+        if (javaType == Timestamp.class) {
+            return new Timestamp(Long.parseLong(value));
+        }
+        if (javaType == java.sql.Date.class) {
+            return new java.sql.Date(Long.parseLong(value));
+        }
+        if (javaType == Date.class) {
+            return new Date(Long.parseLong(value));
+        }
+
+        Optional<?> optional = JavaBeanUtil.convertObjectFromString(value, javaType);
+        if (!optional.isPresent()) {
+            throw new IllegalArgumentException("Unsupported keyset value type: " + javaType);
+        }
+        return optional.get();
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{orders=" + orders + ", values=" + values + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package com.tmp.jpa.data;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+/**
+ * 键集分页的结果
+ * <p>
+ * 没有总数、总页数；页码始终为0，翻页使用{@link #getNextCursor()}.
+ *
+ * @param <T> 实体对象
+ * @see KeysetCursor
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final KeysetCursor next;
+
+    public KeysetSlice(List<T> content, int size, Sort sort, KeysetCursor next) {
+        super(content, PageRequest.of(0, size, sort), next != null);
+        this.next = next;
+    }
+
+    /**
+     * 下一页的游标，没有下一页时返回null
+     *
+     * @return
+     */
+    public String getNextCursor() {
+        return next == null ? null : next.encode();
+    }
+}
@@ -1,6 +1,10 @@
 package com.tmp.jpa.data;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
@@ -18,13 +22,20 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.MediaType;
+import org.springframework.web.util.WebUtils;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.net.HttpHeaders;
 import com.tmp.util.Collections3;
 import com.tmp.util.EncodeUtil;
+import com.tmp.util.JsonMapperRegistry;
+import com.tmp.util.JsonMapperRegistry.Style;
 import com.tmp.util.JsonMapperUtil;
 
 /**
@@ -32,6 +43,8 @@ import com.tmp.util.JsonMapperUtil;
  */
 public class Servlets {
 
+    private static final Logger logger = LoggerFactory.getLogger(Servlets.class);
+
     // -- 常用数值定义 --//
     /**
      * 一年换算为妙
@@ -93,6 +106,7 @@ public class Servlets {
      * 根据浏览器 If-None-Match Header, 计算Etag是否已无效.
      * <p>
      * 如果Etag有效, checkIfNoneMatch返回false, 设置304 not modify status.
+     * 按弱比较，忽略"W/"前缀(响应被压缩时强ETag会改为弱ETag).
      *
      * @param etag 内容的ETag.
      */
@@ -105,7 +119,7 @@ public class Servlets {
 
                 while (!conditionSatisfied && commaTokenizer.hasMoreTokens()) {
                     String currentToken = commaTokenizer.nextToken();
-                    if (currentToken.trim().equals(etag)) {
+                    if (weakEtag(currentToken.trim()).equals(weakEtag(etag))) {
                         conditionSatisfied = true;
                     }
                 }
@@ -122,6 +136,10 @@ public class Servlets {
         return true;
     }
 
+    private static String weakEtag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
     /**
      * 设置让浏览器弹出下载对话框的Header.
      *
@@ -144,6 +162,21 @@ public class Servlets {
 
     }
 
+    /**
+     * 发送文件，支持断点续传.
+     * <p>
+     * 根据文件大小、最后修改时间生成ETag，处理If-None-Match/If-Modified-Since(304)、Range/If-Range(206/416)，
+     * 只支持单个范围，多个范围时发送整个文件. 文件内容不经过堆上的缓冲：
+     * 容器支持sendfile时由容器发送，小文件内存映射后缓存，其他文件用FileChannel.transferTo写入响应.
+     *
+     * @param file     文件
+     * @param fileName 下载后的文件名，为空时不设置Content-Disposition，由浏览器直接打开
+     */
+    public static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file, String fileName)
+            throws IOException {
+        FileDownloadSupport.send(request, response, file, fileName);
+    }
+
     /**
      * 取得带相同前缀的Request Parameters, copy from spring WebUtils.
      * <p>
@@ -260,7 +293,7 @@ public class Servlets {
      * 获取 request 中 json 字符串的内容
      *
      * <p>
-     * 前提是添加live.jialing.platform.core.filter.HttpServletRequestReplacedFilter。不然RequestBody只能被读取一次
+     * 前提是添加com.tmp.web.filter.HttpServletRequestReplacedFilter。不然RequestBody只能被读取一次
      *
      * @param request
      * @return : <code>byte[]</code>
@@ -302,11 +335,18 @@ public class Servlets {
      */
     public static String getRequestPostStr(HttpServletRequest request) throws IOException {
 
-        byte buffer[] = getRequestPostBytes(request);
         String charEncoding = request.getCharacterEncoding();
         if (charEncoding == null) {
             charEncoding = "UTF-8";
         }
+
+        // 已缓存的请求体直接解码，不复制为byte[]
+        CachedRequestBody cached = WebUtils.getNativeRequest(request, CachedRequestBody.class);
+        if (cached != null) {
+            return Charset.forName(charEncoding).decode(cached.getBody()).toString();
+        }
+
+        byte buffer[] = getRequestPostBytes(request);
         return new String(buffer, charEncoding);
     }
 
@@ -323,20 +363,40 @@ public class Servlets {
      */
     public static byte[] getRequestPostBytes(HttpServletRequest request) throws IOException {
 
+        CachedRequestBody cached = WebUtils.getNativeRequest(request, CachedRequestBody.class);
+        if (cached != null) {
+            ByteBuffer body = cached.getBody();
+            byte buffer[] = new byte[body.remaining()];
+            body.get(buffer);
+            return buffer;
+        }
+
         int contentLength = request.getContentLength();
         if (contentLength < 0) {
-            return null;
+            // 没有Content-Length(如chunked)，读到结束为止
+            return ByteStreams.toByteArray(request.getInputStream());
         }
         byte buffer[] = new byte[contentLength];
-        for (int i = 0; i < contentLength; ) {
+        int readlen = ByteStreams.read(request.getInputStream(), buffer, 0, contentLength);
+        return readlen == contentLength ? buffer : Arrays.copyOf(buffer, readlen);
+    }
 
-            int readlen = request.getInputStream().read(buffer, i, contentLength - i);
-            if (readlen == -1) {
-                break;
-            }
-            i += readlen;
+    /**
+     * 获取请求体的只读视图
+     * <p>
+     * 请求已被HttpServletRequestReplacedFilter缓存时不复制；否则读取请求体，只能读取一次
+     *
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    public static ByteBuffer getRequestBody(HttpServletRequest request) throws IOException {
+
+        CachedRequestBody cached = WebUtils.getNativeRequest(request, CachedRequestBody.class);
+        if (cached != null) {
+            return cached.getBody();
         }
-        return buffer;
+        return ByteBuffer.wrap(getRequestPostBytes(request)).asReadOnlyBuffer();
     }
 
     /**
@@ -373,13 +433,49 @@ public class Servlets {
         httpResponse.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
 
         try {
-            httpResponse.getWriter().write(JsonMapperUtil.toJ(ro));
-            httpResponse.getWriter().close();
+            // 直接以utf-8字节写入输出流，不生成中间的json字符串
+            JsonMapperRegistry.writer(Style.SNAKE_CASE).writeValue(httpResponse.getOutputStream(), ro);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 向response中以流的方式写入utf-8格式的分页json信息
+     * <p>
+     * 逐行输出page中的数据，不在内存中生成完整的json字符串
+     *
+     * @param response
+     * @param page
+     */
+    public static void responseJsonUtf8Page(ServletResponse response, Slice<?> page) {
+
+        try (JsonStreamWriter writer = JsonStreamWriter.of(response)) {
+            writer.writePage(page);
+        } catch (IOException e) {
+            // 多为客户端中途断开，响应已提交，无法再返回错误
+            logger.warn("输出分页json失败: {}", e.toString());
+        }
+    }
+
+    /**
+     * 向response中以流的方式写入utf-8格式的json数组
+     * <p>
+     * 边迭代边输出，rows可以按批从数据库读取(见QueryService.iterate)，内存中不保留全部数据.
+     * 客户端中途断开时停止迭代，不再读取后面的数据
+     *
+     * @param response
+     * @param rows
+     */
+    public static void responseJsonUtf8Rows(ServletResponse response, Iterator<?> rows) {
+
+        try (JsonStreamWriter writer = JsonStreamWriter.of(response)) {
+            writer.writeRows(rows);
+        } catch (IOException e) {
+            logger.warn("输出json失败: {}", e.toString());
+        }
+    }
+
     /**
      * 向response中写入utf-8格式的json信息
      *
@@ -0,0 +1,306 @@
+package com.tmp.jpa.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.service.spi.ServiceException;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.tmp.jpa.domain.Entity;
+import com.tmp.util.JavaBeanUtil;
+
+/**
+ * 动态查询条件的执行计划
+ * <p>
+ * 同一实体、同一组查询条件(操作符+属性路径)只解析一次JPA元模型：属性路径的拆分、每一级是List关联、实体关联还是普通属性、
+ * 条件值的转换方式都预先确定，每次执行(包括分页查询时的count)只需要创建join、绑定条件值.
+ *
+ * @see DynamicSpecifications
+ */
+final class SpecificationPlan {
+
+    private static final String SEPARATOR_CHARS = ".";
+
+    /**
+     * 属性路径中每一级的处理方式
+     */
+    enum Step {
+        /**
+         * List关联表，通过left join处理
+         */
+        LIST_JOIN,
+
+        /**
+         * 单关联表(继承于Entity)，通过left join处理
+         */
+        ENTITY_JOIN,
+
+        /**
+         * 普通属性
+         */
+        ATTRIBUTE
+    }
+
+    private final FilterPlan[] filters;
+
+    private SpecificationPlan(FilterPlan[] filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * 根据实体的元模型解析查询条件
+     *
+     * @param model   实体的元模型
+     * @param filters 查询条件，执行时必须以同样的顺序传入
+     * @return
+     */
+    static SpecificationPlan compile(ManagedType<?> model, SearchFilter[] filters) {
+
+        // 相同的属性路径只解析一次
+        Map<String, PathPlan> paths = Maps.newHashMap();
+
+        FilterPlan[] plans = new FilterPlan[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            String fieldName = filters[i].fieldName;
+            PathPlan path = paths.get(fieldName);
+            if (path == null) {
+                path = PathPlan.compile(model, fieldName);
+                paths.put(fieldName, path);
+            }
+            plans[i] = new FilterPlan(filters[i].operator, path);
+        }
+
+        return new SpecificationPlan(plans);
+    }
+
+    /**
+     * 绑定条件值，生成where条件
+     *
+     * @param filters 查询条件，与compile时的顺序一致
+     * @param root
+     * @param builder
+     * @return
+     */
+    List<Predicate> toPredicates(SearchFilter[] filters, Root<?> root, CriteriaBuilder builder) {
+
+        List<Predicate> predicates = new ArrayList<>(filters.length);
+        // left join 关联表。如：key=[tos.partyTo,xxxxxx]
+        Map<String, From> joins = Maps.newHashMap();
+
+        for (int i = 0; i < filters.length; i++) {
+            FilterPlan plan = this.filters[i];
+            Path expression = plan.path.resolve(root, joins);
+            Predicate predicate = plan.bind(builder, expression, filters[i].value);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+
+        return predicates;
+    }
+
+    /**
+     * 一个查询条件的执行计划
+     */
+    private static final class FilterPlan {
+
+        private final SearchFilter.Operator operator;
+        private final PathPlan path;
+
+        FilterPlan(SearchFilter.Operator operator, PathPlan path) {
+            this.operator = operator;
+            this.path = path;
+        }
+
+        Predicate bind(CriteriaBuilder builder, Path expression, Object value) {
+
+            // 有值条件
+            if (value != null) {
+                Optional optional = path.converter.apply(value);
+                if (!optional.isPresent()) {// 判断数据转化是否成功，特别是枚举类型、数值类型
+                    throw new ServiceException("查询条件数据不正确");
+                }
+                switch (operator) {
+                    case EQ:
+                        return builder.equal(expression, optional.get());
+                    case LIKE:
+                        return builder.like(expression, "%" + value + "%");
+                    case GT:
+                        return builder.greaterThan(expression, (Comparable) optional.get());
+                    case LT:
+                        return builder.lessThan(expression, (Comparable) optional.get());
+                    case GTE:
+                        return builder.greaterThanOrEqualTo(expression, (Comparable) optional.get());
+                    case LTE:
+                        return builder.lessThanOrEqualTo(expression, (Comparable) optional.get());
+                    case IN:
+                        return builder.in(expression).value(optional.get());
+                    default:
+                        return null;
+                }
+            }
+
+            // 无值条件
+            switch (operator) {
+                case ISNULL:
+                    return builder.isNull(expression);
+                case ISNOTNULL:
+                    return builder.isNotNull(expression);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 一个属性路径的执行计划
+     * <p>
+     * nested path translate, 如Task的名为"user.name"的filedName, 转换为Task.user.name属性
+     */
+    private static final class PathPlan {
+
+        private final String[] names;
+        // 每一级的完整属性路径，作为join缓存的key
+        private final String[] nested;
+        private final Step[] steps;
+        // 条件值的转换
+        private final Function<Object, Optional> converter;
+
+        private PathPlan(String[] names, String[] nested, Step[] steps, Function<Object, Optional> converter) {
+            this.names = names;
+            this.nested = nested;
+            this.steps = steps;
+            this.converter = converter;
+        }
+
+        static PathPlan compile(ManagedType<?> model, String fieldName) {
+
+            String[] names = StringUtils.split(fieldName, SEPARATOR_CHARS);
+            String[] nested = new String[names.length];
+            Step[] steps = new Step[names.length];
+
+            ManagedType<?> type = model;
+            Class<?> javaType = model.getJavaType();
+            for (int i = 0; i < names.length; i++) {
+
+                String name = names[i];
+                nested[i] = (i == 0) ? name : nested[i - 1] + SEPARATOR_CHARS + name;
+                if (type == null) {
+                    throw new IllegalArgumentException("Unable to locate Attribute with the the given name [" + name + "] on " + javaType);
+                }
+
+                Attribute<?, ?> attribute = type.getAttribute(name);
+                Type<?> next = null;
+                if (attribute.getJavaType() == List.class) {
+                    // 如果是List关联表，则通过join方式处理
+                    steps[i] = Step.LIST_JOIN;
+                    next = ((PluralAttribute<?, ?, ?>) attribute).getElementType();
+                    javaType = next.getJavaType();
+
+                } else if (Entity.class.isAssignableFrom(attribute.getJavaType())) {
+                    // 如果是单关联表，则通过join方式处理。如果继承于DomainEntity则为外键关联表
+                    steps[i] = Step.ENTITY_JOIN;
+                    next = ((SingularAttribute<?, ?>) attribute).getType();
+                    javaType = attribute.getJavaType();
+
+                } else {
+                    steps[i] = Step.ATTRIBUTE;
+                    if (attribute instanceof SingularAttribute) {
+                        next = ((SingularAttribute<?, ?>) attribute).getType();
+                    }
+                    javaType = attribute.getJavaType();
+                }
+
+                type = (next instanceof ManagedType) ? (ManagedType<?>) next : null;
+            }
+
+            return new PathPlan(names, nested, steps, converterOf(javaType));
+        }
+
+        /**
+         * 根据预先确定的处理方式取得属性的Path，同一次查询中相同路径的join只创建一次
+         */
+        Path resolve(Root<?> root, Map<String, From> joins) {
+
+            Path expression = root;
+            for (int i = 0; i < names.length; i++) {
+                switch (steps[i]) {
+                    case LIST_JOIN:
+                    case ENTITY_JOIN:
+                        From join = joins.get(nested[i]);
+                        if (join == null) {
+                            join = (steps[i] == Step.LIST_JOIN)
+                                    ? ((From) expression).joinList(names[i], JoinType.LEFT)
+                                    : ((From) expression).join(names[i], JoinType.LEFT);
+                            joins.put(nested[i], join);
+                        }
+                        expression = join;
+                        break;
+                    default:
+                        expression = expression.get(names[i]);
+                        break;
+                }
+            }
+            return expression;
+        }
+
+        private static Function<Object, Optional> converterOf(final Class<?> javaType) {
+
+            if (javaType == String.class) {
+                // 字符串不需要转换
+                return Optional::of;
+            }
+            return value -> JavaBeanUtil.convertObjectFromObject(value, javaType);
+        }
+    }
+
+    /**
+     * 执行计划的缓存key：实体类型 + 查询条件(操作符+属性路径)的组合
+     */
+    static final class Key {
+
+        private final Class<?> entityClass;
+        private final String signature;
+        private final int hash;
+
+        Key(Class<?> entityClass, String signature) {
+            this.entityClass = entityClass;
+            this.signature = signature;
+            this.hash = 31 * entityClass.hashCode() + signature.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return (entityClass == other.entityClass) && Objects.equals(signature, other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.tmp.jpa.domain;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import com.tmp.util.IdGenerator;
+
+/**
+ * 按时间递增的主键生成器，主键取自{@link IdGenerator}按块预留的id池
+ * <p>
+ * 支持Long/long主键，以及String主键(19位十进制，左补0，字符串顺序与数值顺序一致).
+ * 不访问数据库、不使用IDENTITY，persist时不需要先select，insert可以按jdbc batch发送.
+ * 新增前已赋值的主键保持不变：save(merge)、GeneralRepository.bulkInsert按已赋值的主键新增.
+ * 注意实体配置了主键生成器后，JPA的persist会把已赋值主键的实体当作游离对象，抛出PersistentObjectException.
+ * <pre>
+ * &#64;Id
+ * &#64;GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+ * &#64;GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
+ * private String id;
+ * </pre>
+ * 可通过&#64;Parameter(name = "block_size", value = "256")设置每块的数量，默认128.
+ */
+public class TimeOrderedIdGenerator implements IdentifierGenerator, Configurable {
+
+    public static final String NAME = "time-ordered";
+    public static final String STRATEGY = "com.tmp.jpa.domain.TimeOrderedIdGenerator";
+
+    public static final String BLOCK_SIZE = "block_size";
+    private static final int DEFAULT_BLOCK_SIZE = 128;
+
+    // Long.MAX_VALUE的位数
+    private static final int STRING_LENGTH = 19;
+
+    private IdGenerator.IdPool pool;
+    private boolean stringId;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+
+        Class<?> idClass = type.getReturnedClass();
+        if (idClass == String.class) {
+            stringId = true;
+        } else if (idClass != Long.class && idClass != long.class) {
+            throw new MappingException(getClass().getSimpleName() + " 只支持Long、String类型的主键: " + idClass.getName());
+        }
+        pool = IdGenerator.newPool(ConfigurationHelper.getInt(BLOCK_SIZE, params, DEFAULT_BLOCK_SIZE));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+
+        Serializable assigned = session.getEntityPersister(null, object).getIdentifier(object, session);
+        if (assigned != null) {
+            return assigned;
+        }
+
+        long id = pool.next();
+        return stringId ? pad(id) : id;
+    }
+
+    private static String pad(long id) {
+
+        String digits = Long.toString(id);
+        if (digits.length() >= STRING_LENGTH) {
+            return digits;
+        }
+        StringBuilder padded = new StringBuilder(STRING_LENGTH);
+        for (int i = digits.length(); i < STRING_LENGTH; i++) {
+            padded.append('0');
+        }
+        return padded.append(digits).toString();
+    }
+}
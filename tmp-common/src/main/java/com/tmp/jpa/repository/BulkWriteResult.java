@@ -0,0 +1,84 @@
+package com.tmp.jpa.repository;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 批量写入的结果
+ * <p>
+ * 记录写入的总条数、每一批的条数及耗时，用于导入等大批量写入时观察性能
+ *
+ * @see GeneralRepository#bulkInsert(String, Iterable)
+ * @see GeneralRepository#bulkUpsert(String, Iterable)
+ */
+@Getter
+@ToString
+public class BulkWriteResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 每一批的条数，来自hibernate.jdbc.batch_size
+     */
+    private final int batchSize;
+
+    /**
+     * 写入的总条数
+     */
+    private int rows;
+
+    /**
+     * 每一批的条数
+     */
+    private final List<Integer> batchRows = new ArrayList<>();
+
+    /**
+     * 每一批的耗时，单位毫秒
+     */
+    private final List<Long> batchMillis = new ArrayList<>();
+
+    /**
+     * 总耗时，单位毫秒
+     */
+    private long totalMillis;
+
+    /**
+     * jdbc连接是否开启了rewriteBatchedStatements，开启后MySQL驱动会把一批insert合并为一条多行insert
+     */
+    private boolean rewriteBatchedStatements;
+
+    public BulkWriteResult(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 记录一批的写入
+     *
+     * @param rows  本批的条数
+     * @param nanos 本批的耗时，单位纳秒
+     */
+    void addBatch(int rows, long nanos) {
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        this.rows += rows;
+        this.batchRows.add(rows);
+        this.batchMillis.add(millis);
+        this.totalMillis += millis;
+    }
+
+    void setRewriteBatchedStatements(boolean rewriteBatchedStatements) {
+        this.rewriteBatchedStatements = rewriteBatchedStatements;
+    }
+
+    /**
+     * 批次数
+     */
+    public int getBatches() {
+        return batchRows.size();
+    }
+}
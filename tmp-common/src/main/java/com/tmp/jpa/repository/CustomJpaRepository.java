@@ -2,9 +2,18 @@ package com.tmp.jpa.repository;
 
 import java.io.Serializable;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import com.google.common.cache.CacheStats;
+import com.tmp.jpa.data.DataVersion;
+import com.tmp.jpa.data.KeysetCursor;
+import com.tmp.jpa.data.KeysetSlice;
+
 /**
  * Spring Data JPA 全局扩展基类
  *
@@ -15,4 +24,55 @@ public interface CustomJpaRepository<T, ID extends Serializable> extends General
         JpaRepository<T, ID>,
         JpaSpecificationExecutor<T> {
 
+    /**
+     * 键集分页查询，不使用OFFSET、不查询总数
+     * <br>
+     * 排序的最后会追加主键升序，保证翻页时数据不重复、不遗漏
+     *
+     * @param spec   查询条件
+     * @param cursor 上一页返回的游标，第一页为null
+     * @param size   每页多少条
+     * @param sort   排序，只支持实体自身的属性
+     * @return
+     */
+    KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size, Sort sort);
+
+    /**
+     * 分页查询，不查询总数，多查一条判断是否有下一页
+     *
+     * @param spec     查询条件
+     * @param pageable 分页配置
+     * @return
+     */
+    Slice<T> findSlice(Specification<T> spec, Pageable pageable);
+
+    /**
+     * 满足条件的数量，最多数到limit
+     * <br>
+     * 先用OFFSET limit-1探测第limit条是否存在(只返回一个主键)，存在时直接返回limit，
+     * 否则满足条件的不足limit条，再精确count；数据量大时比count(*)快
+     *
+     * @param spec  查询条件
+     * @param limit 上限
+     * @return 不超过limit的数量
+     */
+    long countAtMost(Specification<T> spec, long limit);
+
+    /**
+     * 满足条件的数据的版本：一次聚合查询count与max(lastModifiedDate)，不加载实体
+     * <br>
+     * 实体不是JpaEntity(没有最后修改时间)时只查询条数
+     *
+     * @param spec 查询条件
+     * @return
+     */
+    DataVersion findDataVersion(Specification<T> spec);
+
+    /**
+     * 实体缓存的命中、未命中、淘汰等统计，没有开启实体缓存时全部为0
+     *
+     * @return
+     * @see EntityCache
+     */
+    CacheStats getEntityCacheStats();
 }
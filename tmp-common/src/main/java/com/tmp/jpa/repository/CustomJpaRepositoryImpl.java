@@ -1,21 +1,58 @@
 package com.tmp.jpa.repository;
 
 import java.io.Serializable;
+import java.sql.PreparedStatement;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import com.tmp.jpa.data.DataVersion;
+import com.tmp.jpa.data.DynamicSpecifications;
+import com.tmp.jpa.data.KeysetCursor;
+import com.tmp.jpa.data.KeysetSlice;
+import com.tmp.jpa.domain.JpaEntity;
 import com.tmp.jpa.domain.ValueObject;
 
 
-
 /**
  * 自定义 JPA仓库实现 基类
  *
@@ -27,18 +64,129 @@ import com.tmp.jpa.domain.ValueObject;
 public class CustomJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID>
         implements CustomJpaRepository<T, ID> {
 
-    @SuppressWarnings("unused")
+    private static final Logger logger = LoggerFactory.getLogger(CustomJpaRepositoryImpl.class);
+
+    /**
+     * 没有配置hibernate.jdbc.batch_size时，批量写入每批的条数
+     */
+    private static final int DEFAULT_BATCH_SIZE = 30;
+
+    /**
+     * 批量获取时每个IN查询最多的主键数
+     */
+    private static final int MAX_CHUNK_SIZE = 256;
+
+    /**
+     * JpaEntity的最后修改时间属性
+     */
+    private static final String LAST_MODIFIED_DATE = "lastModifiedDate";
+
     private final EntityManager entityManager;
+    private final JpaEntityInformation<T, ?> entityInformation;
+
+    // hibernate.jdbc.batch_size，第一次使用时读取
+    private volatile int batchSize;
+
+    // INSERT ... ON DUPLICATE KEY UPDATE，第一次使用时生成
+    private volatile UpsertStatement upsertStatement;
+
+    // 实体缓存，仓库接口上有@EntityCache时开启
+    private volatile EntityCacheSupport<T> entityCache;
 
     public CustomJpaRepositoryImpl(Class<T> domainClass, EntityManager em) {
         super(domainClass, em);
         entityManager = em;
+        entityInformation = JpaEntityInformationSupport.getEntityInformation(domainClass, em);
     }
 
     public CustomJpaRepositoryImpl(final JpaEntityInformation<T, ID> entityInformation,
                                    final EntityManager entityManager) {
         super(entityInformation, entityManager);
         this.entityManager = entityManager;
+        this.entityInformation = entityInformation;
+    }
+
+    /**
+     * 开启实体缓存，由{@link RepositoryFactory}在创建仓库时调用
+     */
+    void enableEntityCache(EntityCache config) {
+
+        SessionFactoryImplementor factory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = factory.getMetamodel().entityPersister(getDomainClass());
+        if (!EntityCacheSupport.supports(persister)) {
+            logger.warn("{} 有关联或延迟加载的属性，不能开启实体缓存", getDomainClass().getName());
+            return;
+        }
+
+        this.entityCache = new EntityCacheSupport<>(config, persister);
+        logger.info("{} 开启实体缓存: maxSize={}, ttlSeconds={}", getDomainClass().getSimpleName(), config.maxSize(), config.ttlSeconds());
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+
+        EntityCacheSupport<T> cache = entityCache;
+        if (cache == null || id == null || !EntityCacheSupport.isCacheable()) {
+            return super.findById(id);
+        }
+
+        T cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long generation = cache.generation();
+        Optional<T> found = super.findById(id);
+        found.ifPresent(entity -> cache.put(id, entity, generation));
+        return found;
+    }
+
+    @Override
+    @Transactional
+    public <S extends T> S save(S entity) {
+
+        S saved = super.save(entity);
+        evict(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public void delete(T entity) {
+
+        super.delete(entity);
+        evict(entity);
+    }
+
+    @Override
+    @Transactional
+    public void deleteInBatch(Iterable<T> entities) {
+
+        super.deleteInBatch(entities);
+        EntityCacheSupport<T> cache = entityCache;
+        if (cache != null) {
+            List<Object> ids = new ArrayList<>();
+            entities.forEach(entity -> ids.add(entityInformation.getId(entity)));
+            cache.evictAll(ids);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteAllInBatch() {
+
+        super.deleteAllInBatch();
+        EntityCacheSupport<T> cache = entityCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public CacheStats getEntityCacheStats() {
+
+        EntityCacheSupport<T> cache = entityCache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
     }
 
     // @Override
@@ -61,7 +209,7 @@ public class CustomJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJ
     @Transactional
     public <S extends T> S save(String account, S entity) {
 
-        return super.save(beforeSaveEntity(account, entity));
+        return save(beforeSaveEntity(account, entity));
     }
 
     @Override
@@ -77,7 +225,7 @@ public class CustomJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJ
 
         List<S> result = new ArrayList<>();
 
-        int n = 30;
+        int n = getBatchSize();
         int i = 0;
         for (S entity : entities) {
             result.add(save(account, entity));
@@ -96,8 +244,402 @@ public class CustomJpaRepositoryImpl<T, ID extends Serializable> extends SimpleJ
         return result;
     }
 
+    @Override
+    @Transactional
+    public <S extends T> BulkWriteResult bulkInsert(String account, Iterable<S> entities) {
+
+        int n = getBatchSize();
+        BulkWriteResult result = new BulkWriteResult(n);
+        Session session = entityManager.unwrap(Session.class);
+
+        int i = 0;
+        long start = System.nanoTime();
+        for (S entity : entities) {
+            S prepared = beforeSaveEntity(account, entity);
+            if (entityInformation.isNew(prepared)) {
+                // persist不会像merge那样先select一次
+                entityManager.persist(prepared);
+            } else {
+                // 主键已赋值：实体有主键生成器时persist会把它当作游离对象拒绝；
+                // save不区分游离对象，直接新增，主键生成器(如TimeOrderedIdGenerator)保留已赋值的主键
+                session.save(prepared);
+            }
+            i++;
+            if (i % n == 0) {
+                flushAndClear();
+                result.addBatch(n, System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+
+        if (i % n > 0) {
+            flushAndClear();
+            result.addBatch(i % n, System.nanoTime() - start);
+        }
+
+        logger.debug("bulk insert {}: {}", getDomainClass().getSimpleName(), result);
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public <S extends T> BulkWriteResult bulkUpsert(String account, Iterable<S> entities) {
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        UpsertStatement statement = getUpsertStatement(session.getFactory());
+        if (statement == null) {
+            return mergeInBatches(account, entities);
+        }
+
+        int n = getBatchSize();
+        BulkWriteResult result = new BulkWriteResult(n);
+
+        // 先把挂起的修改写入数据库
+        entityManager.flush();
+
+        session.doWork(connection -> {
+            result.setRewriteBatchedStatements(StringUtils.containsIgnoreCase(connection.getMetaData().getURL(), "rewriteBatchedStatements=true"));
+
+            try (PreparedStatement ps = connection.prepareStatement(statement.getSql())) {
+                int i = 0;
+                long start = System.nanoTime();
+                for (S entity : entities) {
+                    statement.bind(ps, beforeSaveEntity(account, entity), session);
+                    ps.addBatch();
+                    i++;
+                    if (i % n == 0) {
+                        ps.executeBatch();
+                        result.addBatch(n, System.nanoTime() - start);
+                        start = System.nanoTime();
+                    }
+                }
+
+                if (i % n > 0) {
+                    ps.executeBatch();
+                    result.addBatch(i % n, System.nanoTime() - start);
+                }
+            }
+        });
+
+        // 数据是通过jdbc直接写入的，持久化上下文中的对象可能已过期
+        entityManager.clear();
+        evictAll(entities);
+
+        logger.debug("bulk upsert {}: {}", getDomainClass().getSimpleName(), result);
+        return result;
+    }
+
+    @Override
+    public KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size, Sort sort) {
+
+        Validate.isTrue(size > 0, "每页条数必须大于0");
+
+        Sort keysetSort = KeysetCursor.withTieBreaker(sort, entityInformation.getIdAttribute().getName());
+        Specification<T> seek = DynamicSpecifications.byKeyset(keysetSort, cursor);
+
+        // 多查一条，判断是否有下一页
+        TypedQuery<T> query = getQuery(Specification.where(spec).and(seek), keysetSort);
+        query.setMaxResults(size + 1);
+        List<T> content = query.getResultList();
+
+        KeysetCursor next = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            next = KeysetCursor.of(keysetSort, content.get(size - 1));
+        }
+
+        return new KeysetSlice<>(content, size, keysetSort, next);
+    }
+
+    @Override
+    public Slice<T> findSlice(Specification<T> spec, Pageable pageable) {
+
+        TypedQuery<T> query = getQuery(spec, pageable);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList());
+        }
+
+        // 多查一条，判断是否有下一页
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<T> content = query.getResultList();
+
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public long countAtMost(Specification<T> spec, long limit) {
+
+        if (limit <= 0) {
+            return 0;
+        }
+
+        // 探测第limit条是否存在：数据库跳过前limit-1条，最多返回一个主键，不把满足条件的数据都读到应用中
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = builder.createQuery(Object.class);
+        Root<T> root = query.from(getDomainClass());
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, builder);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.select(root.get(entityInformation.getIdAttribute().getName()));
+
+        List<Object> probe = entityManager.createQuery(query)
+                .setFirstResult((int) Math.min(limit - 1, Integer.MAX_VALUE))
+                .setMaxResults(1)
+                .getResultList();
+        if (!probe.isEmpty()) {
+            return limit;
+        }
+
+        // 不足limit条，精确计数的代价也有上限
+        return count(spec);
+    }
+
+    @Override
+    public DataVersion findDataVersion(Specification<T> spec) {
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<T> root = query.from(getDomainClass());
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, builder);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+
+        boolean modifiable = JpaEntity.class.isAssignableFrom(getDomainClass());
+        if (modifiable) {
+            query.multiselect(builder.count(root), builder.greatest(root.<LocalDateTime>get(LAST_MODIFIED_DATE)));
+        } else {
+            query.multiselect(builder.count(root));
+        }
+
+        Tuple tuple = entityManager.createQuery(query).getSingleResult();
+        Long count = tuple.get(0, Long.class);
+        return new DataVersion(count == null ? 0 : count, modifiable ? tuple.get(1, LocalDateTime.class) : null);
+    }
+
+    @Override
+    public List<T> multiGet(Iterable<ID> ids) {
+
+        return new ArrayList<>(multiGetAsMap(ids).values());
+    }
+
+    @Override
+    public Map<ID, T> multiGetAsMap(Iterable<ID> ids) {
+
+        // 去重，保持传入的顺序
+        Set<ID> unique = new LinkedHashSet<>();
+        for (ID id : ids) {
+            if (id != null) {
+                unique.add(id);
+            }
+        }
+        if (unique.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<ID, T> found = Maps.newHashMapWithExpectedSize(unique.size());
+        List<ID> missing = new ArrayList<>(unique.size());
+
+        // 有事务时持久性上下文中已有的实体直接使用
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        SessionImplementor session = inTransaction ? entityManager.unwrap(SessionImplementor.class) : null;
+        EntityPersister persister = inTransaction ? session.getFactory().getMetamodel().entityPersister(getDomainClass()) : null;
+
+        EntityCacheSupport<T> cache = EntityCacheSupport.isCacheable() ? entityCache : null;
+        long generation = (cache == null) ? 0 : cache.generation();
+
+        for (ID id : unique) {
+            T entity = null;
+            if (session != null) {
+                entity = (T) session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            }
+            if (entity == null && cache != null) {
+                entity = cache.get(id);
+            }
+            if (entity != null) {
+                found.put(id, entity);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        for (T entity : queryByIds(missing)) {
+            ID id = (ID) entityInformation.getId(entity);
+            found.put(id, entity);
+            if (cache != null) {
+                cache.put(id, entity, generation);
+            }
+        }
+
+        Map<ID, T> result = new LinkedHashMap<>(found.size() * 4 / 3 + 1);
+        for (ID id : unique) {
+            T entity = found.get(id);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        }
+        return result;
+    }
+
     // ====================
 
+    /**
+     * 分块查询
+     */
+    private List<T> queryByIds(List<ID> ids) {
+
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<List<ID>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); ) {
+            int chunkSize = chunkSize(ids.size() - from);
+            int to = Math.min(from + chunkSize, ids.size());
+            List<ID> chunk = new ArrayList<>(chunkSize);
+            chunk.addAll(ids.subList(from, to));
+            // 用最后一个主键补齐到固定的大小
+            ID last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < chunkSize) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+            from = to;
+        }
+
+        List<T> result = new ArrayList<>(ids.size());
+        for (List<ID> chunk : chunks) {
+            result.addAll(queryChunk(chunk));
+        }
+        return result;
+    }
+
+    private List<T> queryChunk(List<ID> ids) {
+
+        String jpql = "select e from " + entityInformation.getEntityName() + " e where e."
+                + entityInformation.getIdAttribute().getName() + " in :ids";
+        return entityManager.createQuery(jpql, getDomainClass())
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * 不小于n的2的幂，最大为MAX_CHUNK_SIZE
+     */
+    private static int chunkSize(int n) {
+
+        if (n >= MAX_CHUNK_SIZE) {
+            return MAX_CHUNK_SIZE;
+        }
+        return (n <= 1) ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * 不支持 INSERT ... ON DUPLICATE KEY UPDATE 时，逐条merge并按批flush
+     */
+    private <S extends T> BulkWriteResult mergeInBatches(String account, Iterable<S> entities) {
+
+        int n = getBatchSize();
+        BulkWriteResult result = new BulkWriteResult(n);
+
+        int i = 0;
+        long start = System.nanoTime();
+        for (S entity : entities) {
+            entityManager.merge(beforeSaveEntity(account, entity));
+            i++;
+            if (i % n == 0) {
+                flushAndClear();
+                result.addBatch(n, System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+
+        if (i % n > 0) {
+            flushAndClear();
+            result.addBatch(i % n, System.nanoTime() - start);
+        }
+
+        evictAll(entities);
+        return result;
+    }
+
+    /**
+     * 实体缓存中失效该实体
+     */
+    private void evict(T entity) {
+
+        EntityCacheSupport<T> cache = entityCache;
+        if (cache != null && entity != null) {
+            Object id = entityInformation.getId(entity);
+            if (id != null) {
+                cache.evict(id);
+            }
+        }
+    }
+
+    private void evictAll(Iterable<? extends T> entities) {
+
+        EntityCacheSupport<T> cache = entityCache;
+        if (cache != null) {
+            List<Object> ids = new ArrayList<>();
+            for (T entity : entities) {
+                Object id = entityInformation.getId(entity);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+            cache.evictAll(ids);
+        }
+    }
+
+    /**
+     * 批量写入每批的条数，与hibernate.jdbc.batch_size一致
+     */
+    protected int getBatchSize() {
+
+        int size = batchSize;
+        if (size == 0) {
+            SessionFactoryImplementor factory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+            size = factory.getSessionFactoryOptions().getJdbcBatchSize();
+            if (size <= 0) {
+                size = DEFAULT_BATCH_SIZE;
+            }
+            batchSize = size;
+        }
+        return size;
+    }
+
+    /**
+     * 生成upsert语句，只支持MySQL、单表映射、没有乐观锁版本的实体，其他情况返回null
+     */
+    private UpsertStatement getUpsertStatement(SessionFactoryImplementor factory) {
+
+        UpsertStatement statement = upsertStatement;
+        if (statement == null) {
+            Dialect dialect = factory.getJdbcServices().getDialect();
+            EntityPersister persister = factory.getMetamodel().entityPersister(getDomainClass());
+            if (!(dialect instanceof MySQLDialect) || !(persister instanceof SingleTableEntityPersister) || persister.isVersioned()) {
+                logger.warn("{} 不支持 insert ... on duplicate key update，改为逐条merge", getDomainClass().getName());
+                return null;
+            }
+            statement = UpsertStatement.of((SingleTableEntityPersister) persister, factory);
+            upsertStatement = statement;
+        }
+        return statement;
+    }
+
     /**
      * 修改实体对象的创建者、修改者信息
      */
@@ -0,0 +1,38 @@
+package com.tmp.jpa.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启仓库的本地实体缓存，标注在仓库接口上
+ * <p>
+ * 按主键缓存findById的结果，容量满时按LRU淘汰，写入后经过ttlSeconds过期；
+ * save、saveAndFlush、delete、deleteInBatch及批量写入时失效对应的主键(事务提交后再失效一次).
+ * <br>
+ * 有读写事务时不使用缓存，保证事务中取得的是受管理的实体；缓存的是属性值的副本，每次命中返回新的游离对象，
+ * 修改后调用save不会影响缓存和其他调用方. 只支持没有关联、没有延迟加载属性的实体，其他实体不开启缓存.
+ * <pre>
+ * &#64;EntityCache(maxSize = 10000, ttlSeconds = 300)
+ * public interface UserRepository extends CustomJpaRepository&lt;User, String&gt; {}
+ * </pre>
+ *
+ * @see CustomJpaRepository#getEntityCacheStats()
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EntityCache {
+
+    /**
+     * 最多缓存的实体数
+     */
+    long maxSize() default 10000;
+
+    /**
+     * 写入缓存后的过期时间，单位秒
+     */
+    long ttlSeconds() default 300;
+}
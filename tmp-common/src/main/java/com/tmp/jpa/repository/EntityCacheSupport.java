@@ -0,0 +1,182 @@
+package com.tmp.jpa.repository;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * 仓库的本地实体缓存，一个仓库(实体类型)一个实例，key为主键
+ * <p>
+ * 缓存的是实体属性值的副本(与Hibernate二级缓存相同的思路)，不是实体对象本身：
+ * 写入时复制属性值，每次命中都新建一个实体返回，调用方修改取得的实体不会影响缓存和其他调用方.
+ * 只支持没有关联(@ManyToOne、集合等)、没有延迟加载属性的实体，见{@link #supports(EntityPersister)}.
+ *
+ * @param <T> 实体对象的类型
+ * @see EntityCache
+ */
+final class EntityCacheSupport<T> {
+
+    private final Cache<Object, Object[]> cache;
+
+    private final EntityPersister persister;
+    private final SessionFactoryImplementor factory;
+    private final Type[] propertyTypes;
+
+    // 每次失效加一。读取数据库前记下，写入缓存时若已变化则不写，避免把失效前读到的旧数据放回缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    EntityCacheSupport(EntityCache config, EntityPersister persister) {
+        this.persister = persister;
+        this.factory = persister.getFactory();
+        this.propertyTypes = persister.getPropertyTypes();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(config.maxSize())
+                .expireAfterWrite(config.ttlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 实体是否可以缓存：属性都是基本类型、嵌入对象，没有关联，也没有延迟加载的属性
+     * <br>
+     * 关联的实体、集合无法按值复制，缓存后会被多个调用方共享
+     */
+    static boolean supports(EntityPersister persister) {
+
+        if (persister.hasLazyProperties()) {
+            return false;
+        }
+        for (Type type : persister.getPropertyTypes()) {
+            if (type.isAssociationType()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 当前是否可以使用缓存：没有事务，或只读事务
+     */
+    static boolean isCacheable() {
+
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * 缓存中的实体，每次返回新的实例
+     */
+    T get(Object id) {
+
+        Object[] state = cache.getIfPresent(id);
+        return state == null ? null : restore(id, state);
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 写入缓存，读取数据库之后已经有失效时放弃
+     *
+     * @param id         主键
+     * @param entity     实体
+     * @param generation 读取数据库前的{@link #generation()}
+     */
+    void put(Object id, T entity, long generation) {
+
+        if (this.generation.get() == generation) {
+            cache.put(id, copy(persister.getPropertyValues(entity)));
+        }
+    }
+
+    void evict(Object id) {
+
+        evictAll(Collections.singletonList(id));
+    }
+
+    /**
+     * 立即失效；有事务时，事务结束后再失效一次，防止提交前其他线程读到旧数据放入缓存
+     */
+    void evictAll(final Collection<?> ids) {
+
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        invalidate(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(ids);
+                }
+            });
+        }
+    }
+
+    void clear() {
+
+        generation.incrementAndGet();
+        cache.invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                    cache.invalidateAll();
+                }
+            });
+        }
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    /**
+     * 按缓存的属性值新建实体
+     */
+    @SuppressWarnings("unchecked")
+    private T restore(Object id, Object[] state) {
+
+        Serializable copiedId = (Serializable) persister.getIdentifierType().deepCopy(id, factory);
+        T entity = (T) persister.instantiate(copiedId, null);
+        persister.setPropertyValues(entity, copy(state));
+        return entity;
+    }
+
+    /**
+     * 逐个属性深复制(Date、数组、嵌入对象等可变的值复制一份)
+     */
+    private Object[] copy(Object[] values) {
+
+        Object[] copied = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            copied[i] = propertyTypes[i].deepCopy(values[i], factory);
+        }
+        return copied;
+    }
+
+    private void invalidate(Collection<?> ids) {
+
+        generation.incrementAndGet();
+        cache.invalidateAll(ids);
+    }
+}
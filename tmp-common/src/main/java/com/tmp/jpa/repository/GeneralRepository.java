@@ -2,6 +2,7 @@ package com.tmp.jpa.repository;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 一般对象的仓库的接口
@@ -32,7 +33,7 @@ public interface GeneralRepository<T, ID extends Serializable> {
     /**
      * 批量保存实体（立即写入），记录创建、修改信息
      * <br>
-     * 内部实现时没50条数据flush一次
+     * 内部实现时每hibernate.jdbc.batch_size条数据flush一次
      *
      * @param account  操作人
      * @param entities 对象集合
@@ -40,6 +41,54 @@ public interface GeneralRepository<T, ID extends Serializable> {
      */
     <S extends T> List<S> saveAndFlush(String account, Iterable<S> entities);
 
+    /**
+     * 批量新增实体（立即写入），记录创建、修改信息
+     * <br>
+     * 使用persist，不会像save(merge)那样逐条先select；每hibernate.jdbc.batch_size条flush、clear一次，
+     * 由jdbc batch一次发送，连接开启rewriteBatchedStatements时MySQL驱动会合并为多行insert.
+     * 主键为空时由主键生成器(如TimeOrderedIdGenerator)生成；已赋值的主键按原值新增(主键生成器需要保留已赋值的主键)，
+     * 数据库中必须不存在，否则在flush时违反主键约束. 使用IDENTITY自增主键时Hibernate无法按batch写入
+     *
+     * @param account  操作人
+     * @param entities 对象集合
+     * @return 写入的条数、每批的耗时
+     */
+    <S extends T> BulkWriteResult bulkInsert(String account, Iterable<S> entities);
+
+    /**
+     * 批量新增或修改实体（立即写入），记录创建、修改信息
+     * <br>
+     * MySQL下使用 INSERT ... ON DUPLICATE KEY UPDATE 按jdbc batch写入，不逐条select；
+     * 不可更新(updatable = false)的属性只在新增时写入.
+     * 其他数据库或有乐观锁版本(@Version)的实体，退化为逐条merge、按批flush.
+     * <br>
+     * 数据直接通过jdbc写入，完成后会清除持久性上下文
+     *
+     * @param account  操作人
+     * @param entities 对象集合，主键不能为空
+     * @return 写入的条数、每批的耗时
+     */
+    <S extends T> BulkWriteResult bulkUpsert(String account, Iterable<S> entities);
+
+    /**
+     * 根据主键批量获取，按传入的顺序返回，重复的主键只返回一次，不存在的忽略
+     * <br>
+     * 主键去重后先查持久性上下文(有事务时)及实体缓存，其余按256以内的2的幂分块、用IN查询，
+     * 不足一块的用最后一个主键补齐，使Hibernate只生成少数几种sql
+     *
+     * @param ids 主键集合
+     * @return
+     */
+    List<T> multiGet(Iterable<ID> ids);
+
+    /**
+     * 根据主键批量获取，返回主键与对象的映射，按传入的顺序，不存在的主键不在其中
+     *
+     * @param ids 主键集合
+     * @return
+     */
+    Map<ID, T> multiGetAsMap(Iterable<ID> ids);
+
     /**
      * 将所有挂起的更改刷新到数据库。<br>
      * 清除持久性上下文，导致所有托管实体变得独立。
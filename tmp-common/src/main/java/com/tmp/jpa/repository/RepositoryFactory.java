@@ -2,7 +2,10 @@ package com.tmp.jpa.repository;
 
 import javax.persistence.EntityManager;
 
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryImplementation;
+import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 
 public class RepositoryFactory extends JpaRepositoryFactory {
@@ -17,4 +20,18 @@ public class RepositoryFactory extends JpaRepositoryFactory {
         return CustomJpaRepositoryImpl.class;
     }
 
+    @Override
+    protected JpaRepositoryImplementation<?, ?> getTargetRepository(RepositoryInformation information, EntityManager entityManager) {
+
+        JpaRepositoryImplementation<?, ?> repository = super.getTargetRepository(information, entityManager);
+
+        // 仓库接口上标注了@EntityCache时开启实体缓存
+        EntityCache entityCache = AnnotationUtils.findAnnotation(information.getRepositoryInterface(), EntityCache.class);
+        if (entityCache != null && repository instanceof CustomJpaRepositoryImpl) {
+            ((CustomJpaRepositoryImpl<?, ?>) repository).enableEntityCache(entityCache);
+        }
+
+        return repository;
+    }
+
 }
@@ -0,0 +1,110 @@
+package com.tmp.jpa.repository;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.type.Type;
+
+/**
+ * MySQL的 INSERT ... ON DUPLICATE KEY UPDATE 语句
+ * <p>
+ * 根据实体的映射生成，每个实体一行。配合jdbc的batch使用，
+ * 连接开启rewriteBatchedStatements时驱动会把一批合并为一条多行的insert.
+ * <br>
+ * 不可更新(updatable = false)的属性，如创建者、创建时间，只在insert时写入.
+ */
+final class UpsertStatement {
+
+    private final SingleTableEntityPersister persister;
+    private final SessionFactoryImplementor factory;
+    // 参与insert的属性下标
+    private final int[] properties;
+    private final String sql;
+
+    private UpsertStatement(SingleTableEntityPersister persister, SessionFactoryImplementor factory,
+                            int[] properties, String sql) {
+        this.persister = persister;
+        this.factory = factory;
+        this.properties = properties;
+        this.sql = sql;
+    }
+
+    static UpsertStatement of(SingleTableEntityPersister persister, SessionFactoryImplementor factory) {
+
+        List<String> columns = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
+        List<Integer> properties = new ArrayList<>();
+
+        for (String column : persister.getIdentifierColumnNames()) {
+            columns.add(column);
+        }
+
+        Type[] types = persister.getPropertyTypes();
+        boolean[] insertable = persister.getPropertyInsertability();
+        boolean[] updatable = persister.getPropertyUpdateability();
+        for (int i = 0; i < types.length; i++) {
+            // 集合属性由关联表维护，不在本表中
+            if (!insertable[i] || types[i].isCollectionType()) {
+                continue;
+            }
+            String[] names = persister.getPropertyColumnNames(i);
+            if (names.length == 0) {
+                continue;
+            }
+            properties.add(i);
+            for (String column : names) {
+                columns.add(column);
+                if (updatable[i]) {
+                    updates.add(column + " = VALUES(" + column + ")");
+                }
+            }
+        }
+
+        // 没有可更新的列时，重复的行保持不变
+        if (updates.isEmpty()) {
+            String id = persister.getIdentifierColumnNames()[0];
+            updates.add(id + " = " + id);
+        }
+
+        StringBuilder sql = new StringBuilder("insert into ").append(persister.getTableName())
+                .append(" (").append(String.join(", ", columns)).append(") values (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") on duplicate key update ").append(String.join(", ", updates));
+
+        return new UpsertStatement(persister, factory, properties.stream().mapToInt(Integer::intValue).toArray(), sql.toString());
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * 把一个实体的主键及属性值绑定到statement
+     */
+    void bind(PreparedStatement statement, Object entity, SharedSessionContractImplementor session) throws SQLException {
+
+        Serializable id = persister.getIdentifier(entity, session);
+        Validate.notNull(id, "批量写入时实体的主键不能为空: %s", entity);
+
+        int index = 1;
+        Type idType = persister.getIdentifierType();
+        idType.nullSafeSet(statement, id, index, session);
+        index += idType.getColumnSpan(factory);
+
+        Type[] types = persister.getPropertyTypes();
+        Object[] values = persister.getPropertyValues(entity);
+        for (int i : properties) {
+            types[i].nullSafeSet(statement, values[i], index, session);
+            index += types[i].getColumnSpan(factory);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tmp.jpa.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.tmp.jpa.data.CountStrategy;
+
+/**
+ * 分页查询总数的统计
+ * <p>
+ * 记录精确count的次数及耗时；缓存命中、上限计数、不计数、根据当前页推算出总数而省去的count次数，
+ * 以精确count的平均耗时估算节省的时间.
+ */
+public class CountMetrics {
+
+    private final LongAdder exactCounts = new LongAdder();
+    private final LongAdder exactNanos = new LongAdder();
+    private final LongAdder cappedCounts = new LongAdder();
+    private final LongAdder cappedNanos = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder inferred = new LongAdder();
+
+    void recordExact(long nanos) {
+        exactCounts.increment();
+        exactNanos.add(nanos);
+    }
+
+    void recordCapped(long nanos) {
+        cappedCounts.increment();
+        cappedNanos.add(nanos);
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    void recordSkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * 当前页不满一页或是第一页且没有下一页，总数可直接推算
+     */
+    void recordInferred() {
+        inferred.increment();
+    }
+
+    /**
+     * 精确count的次数
+     */
+    public long getExactCounts() {
+        return exactCounts.sum();
+    }
+
+    /**
+     * 精确count的平均耗时，单位毫秒
+     */
+    public double getExactAvgMillis() {
+        long n = exactCounts.sum();
+        return n == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(exactNanos.sum()) / n / 1000;
+    }
+
+    /**
+     * 上限计数的次数
+     */
+    public long getCappedCounts() {
+        return cappedCounts.sum();
+    }
+
+    /**
+     * 缓存命中的次数
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * 按{@link CountStrategy#NONE}不计数的次数
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * 根据当前页推算出总数的次数
+     */
+    public long getInferred() {
+        return inferred.sum();
+    }
+
+    /**
+     * 估算节省的count耗时，单位毫秒
+     * <p>
+     * 省去的count次数 × 精确count的平均耗时，上限计数按平均耗时与实际耗时之差计算；没有精确count的样本时为0
+     */
+    public long getSavedMillis() {
+
+        long n = exactCounts.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long avg = exactNanos.sum() / n;
+        long saved = avg * (cacheHits.sum() + skipped.sum() + inferred.sum())
+                + Math.max(0, avg * cappedCounts.sum() - cappedNanos.sum());
+        return TimeUnit.NANOSECONDS.toMillis(saved);
+    }
+
+    @Override
+    public String toString() {
+        return "CountMetrics{exactCounts=" + getExactCounts()
+                + ", exactAvgMillis=" + getExactAvgMillis()
+                + ", cappedCounts=" + getCappedCounts()
+                + ", cacheHits=" + getCacheHits()
+                + ", skipped=" + getSkipped()
+                + ", inferred=" + getInferred()
+                + ", savedMillis=" + getSavedMillis() + "}";
+    }
+}
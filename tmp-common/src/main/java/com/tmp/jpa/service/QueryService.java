@@ -2,9 +2,15 @@ package com.tmp.jpa.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
+import com.tmp.jpa.data.DataVersion;
+import com.tmp.jpa.data.KeysetCursor;
+import com.tmp.jpa.data.KeysetSlice;
+
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,6 +39,14 @@ public interface QueryService<T extends Serializable, ID extends Serializable> {
      */
     List<T> findByPKs(Iterable<ID> pks);
 
+    /**
+     * 根据主键集合查询，返回主键与对象的映射
+     *
+     * @param pks 主键集合
+     * @return
+     */
+    Map<ID, T> findMapByPKs(Iterable<ID> pks);
+
     /**
      * 根据查询条件，获取满足条件的第一个。多条件通过【且】的方式查询
      *
@@ -59,6 +73,46 @@ public interface QueryService<T extends Serializable, ID extends Serializable> {
      */
     Page<T> findPageByQuick(Map<String, Object> searchParams, Pageable page);
 
+    /**
+     * 分页查询，多条件通过【且】的方式查询；总数的计算方式为NONE时不查询总数，只返回是否有下一页
+     *
+     * @param searchParams 查询条件及值
+     * @param page         分页配置
+     * @return 查询了总数时为Page
+     */
+    Slice<T> findSlice(Map<String, Object> searchParams, Pageable page);
+
+    /**
+     * 键集分页查询，不查询总数，多条件通过【且】的方式查询
+     *
+     * @param searchParams 查询条件及值
+     * @param cursor       上一页返回的游标，第一页为null
+     * @param size         每页多少条
+     * @param sort         排序
+     * @return
+     */
+    KeysetSlice<T> findSlice(Map<String, Object> searchParams, KeysetCursor cursor, int size, Sort sort);
+
+    /**
+     * 按键集分页逐批遍历满足条件的数据，不查询总数，多条件通过【且】的方式查询
+     * <br>
+     * 迭代到一批的末尾时才查询下一批，内存中只保留一批，适合导出
+     *
+     * @param searchParams 查询条件及值
+     * @param sort         排序
+     * @param batchSize    每批多少条
+     * @return
+     */
+    Iterator<T> iterate(Map<String, Object> searchParams, Sort sort, int batchSize);
+
+    /**
+     * 满足条件的数据的版本(条数、最大的最后修改时间)，用于判断查询结果是否变化，多条件通过【且】的方式查询
+     *
+     * @param searchParams 查询条件及值
+     * @return
+     */
+    DataVersion findDataVersion(Map<String, Object> searchParams);
+
     /**
      * 查询所有
      *
@@ -1,31 +1,49 @@
 package com.tmp.jpa.service;
 
 import java.io.Serializable;
-import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.validation.Validator;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.service.spi.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.GenericTypeResolver;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.tmp.jpa.data.CountStrategy;
+import com.tmp.jpa.data.CountedPage;
+import com.tmp.jpa.data.DataVersion;
+import com.tmp.jpa.data.EntityMetadata;
+import com.tmp.jpa.data.KeysetCursor;
+import com.tmp.jpa.data.KeysetSlice;
 import com.tmp.jpa.data.LinkType;
 import com.tmp.jpa.domain.Entity;
 import com.tmp.jpa.repository.CustomJpaRepository;
 import com.tmp.util.Collections3;
+import com.tmp.util.Reflections;
+import com.tmp.util.SingleFlight;
 import com.tmp.valid.BeanValidators;
 import com.tmp.valid.First;
 import com.tmp.valid.Second;
@@ -43,9 +61,43 @@ import com.tmp.valid.Second;
  */
 public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Serializable> implements GeneralService<T, ID> {
 
+    /**
+     * CAPPED方式时总数的默认上限
+     */
+    private static final long DEFAULT_COUNT_CAP = 10000;
+
+    /**
+     * CACHED方式时总数的默认缓存时间，单位秒
+     */
+    private static final long DEFAULT_COUNT_CACHE_SECONDS = 60;
+
     @Autowired
     protected Validator validator;
 
+    // 实体类型及元数据，创建时解析一次
+    private final Class<T> entityClass;
+    private final EntityMetadata entityMetadata;
+
+    private final CountMetrics countMetrics = new CountMetrics();
+
+    // 相同分页查询的合并，isSingleFlight()为true时使用
+    private final SingleFlight<List<Object>, Slice<T>> pageFlight = new SingleFlight<>();
+
+    // 查询条件 -> 总数，第一次使用CACHED方式时创建
+    private volatile Cache<String, Long> countCache;
+
+    protected SimpleGeneralService() {
+
+        // 被CGLIB代理(proxyTargetClass = true)时，取被代理的类
+        Class<?> serviceClass = Reflections.getUserClass(this);
+        Class<?>[] types = GenericTypeResolver.resolveTypeArguments(serviceClass, SimpleGeneralService.class);
+        if (types == null || types[0] == null) {
+            throw new IllegalStateException(serviceClass.getName() + " 没有声明实体类型的泛型参数");
+        }
+        this.entityClass = (Class<T>) types[0];
+        this.entityMetadata = EntityMetadata.of(entityClass);
+    }
+
     /**
      * 实体对应的仓储
      *
@@ -80,6 +132,7 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
             throw new ServiceException("新增实体时ID有值，必须为NULL");
         }
 
+        // ID为NULL时save直接persist，不先select；ID由实体上配置的生成器(如TimeOrderedIdGenerator)生成
         return getRepository().saveAndFlush(StringUtils.EMPTY, entity);
 
     }
@@ -96,7 +149,7 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
             BeanValidators.validateWithException(validator, o, First.class);
         });
 
-        getRepository().saveAndFlush(StringUtils.EMPTY, list);
+        getRepository().bulkInsert(StringUtils.EMPTY, list);
     }
 
     @Override
@@ -178,7 +231,6 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
      */
     public Optional<T> findOne(Map<String, Object> searchParams) {
 
-        Class<T> entityClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
         Specification<T> spec = buildSpecification(entityClass, searchParams, LinkType.and);
         return getRepository().findOne(spec);
     }
@@ -196,10 +248,23 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
             return Lists.newArrayList();
         }
 
-        Map searchParams = Maps.newHashMap();
-        searchParams.put("IN_id", pks);
+        return getRepository().multiGet(pks);
+    }
 
-        return findAll(searchParams);
+    /**
+     * 批量获取制定ID的对象，返回主键与对象的映射
+     *
+     * @param pks 主键集合
+     * @return
+     */
+    @Override
+    public Map<ID, T> findMapByPKs(Iterable<ID> pks) {
+
+        if (Collections3.isEmpty(pks)) {
+            return Maps.newLinkedHashMap();
+        }
+
+        return getRepository().multiGetAsMap(pks);
     }
 
     @Override
@@ -214,6 +279,38 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
         return findPage(searchParams, page, LinkType.or);
     }
 
+    @Override
+    public Slice<T> findSlice(Map<String, Object> searchParams, Pageable page) {
+
+        return findSlice(searchParams, page, LinkType.and, getCountStrategy());
+    }
+
+    @Override
+    public KeysetSlice<T> findSlice(Map<String, Object> searchParams, KeysetCursor cursor, int size, Sort sort) {
+
+        return findSlice(searchParams, cursor, size, sort, LinkType.and);
+    }
+
+    @Override
+    public DataVersion findDataVersion(Map<String, Object> searchParams) {
+
+        return findDataVersion(searchParams, LinkType.and);
+    }
+
+    /**
+     * 满足条件的数据的版本：条数、最大的最后修改时间，一次聚合查询，不加载实体
+     *
+     * @param searchParams 查询条件及值
+     * @param linkType     or查询或者and查询
+     * @return
+     */
+    public DataVersion findDataVersion(Map<String, Object> searchParams, LinkType linkType) {
+
+        Specification<T> spec = buildSpecification(entityClass, searchParams, linkType);
+
+        return getRepository().findDataVersion(spec);
+    }
+
     /**
      * 查询所有
      *
@@ -273,7 +370,6 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
      */
     public List<T> findAll(Map<String, Object> searchParams, Sort sort, LinkType linkType) {
 
-        Class<T> entityClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
         Specification<T> spec = buildSpecification(entityClass, searchParams, linkType);
 
         if (sort == null) {
@@ -293,11 +389,113 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
      */
     public Page<T> findPage(Map<String, Object> searchParams, Pageable page, LinkType linkType) {
 
-        Class<T> entityClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+        return findPage(searchParams, page, linkType, getCountStrategy());
+    }
+
+    /**
+     * 分页查询，指定总数的计算方式
+     * <p>
+     * 数据多查一条判断是否有下一页；最后一页(不满一页)时总数可直接推算，不再count.
+     * Page需要总数，不支持{@link CountStrategy#NONE}，不查询总数时使用{@link #findSlice(Map, Pageable, LinkType, CountStrategy)}
+     *
+     * @param searchParams  查询条件及值
+     * @param page          分页配置
+     * @param linkType      or查询或者and查询
+     * @param countStrategy 总数的计算方式，不能是NONE
+     * @return
+     */
+    public CountedPage<T> findPage(Map<String, Object> searchParams, Pageable page, LinkType linkType, CountStrategy countStrategy) {
+
+        if (countStrategy == CountStrategy.NONE) {
+            throw new IllegalArgumentException("CountStrategy.NONE 不查询总数，没有Page，使用findSlice");
+        }
+        return (CountedPage<T>) coalesce(searchParams, page, linkType, countStrategy,
+                () -> queryPage(searchParams, page, linkType, countStrategy));
+    }
+
+    /**
+     * 分页查询，指定总数的计算方式
+     * <p>
+     * NONE时不查询总数，返回只有是否有下一页的Slice；其他方式同{@link #findPage(Map, Pageable, LinkType, CountStrategy)}，返回Page
+     *
+     * @param searchParams  查询条件及值
+     * @param page          分页配置
+     * @param linkType      or查询或者and查询
+     * @param countStrategy 总数的计算方式
+     * @return
+     */
+    public Slice<T> findSlice(Map<String, Object> searchParams, Pageable page, LinkType linkType, CountStrategy countStrategy) {
+
+        if (countStrategy != CountStrategy.NONE) {
+            return findPage(searchParams, page, linkType, countStrategy);
+        }
+        return coalesce(searchParams, page, linkType, countStrategy, () -> {
+            countMetrics.recordSkipped();
+            return getRepository().findSlice(buildSpecification(entityClass, searchParams, linkType), page);
+        });
+    }
+
+    private Slice<T> coalesce(Map<String, Object> searchParams, Pageable page, LinkType linkType, CountStrategy countStrategy,
+                              Supplier<Slice<T>> query) {
+
+        // 读写事务中的查询要看到本事务未提交的修改，实体也要属于本事务的持久化上下文，不合并；
+        // 只读事务(如SimpleRestController.async)中没有未提交的修改，同样合并
+        if (!isSingleFlight() || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return query.get();
+        }
+
+        List<Object> key = Arrays.asList(entityClass, normalize(searchParams), linkType, page, countStrategy);
+        return pageFlight.execute(key, query);
+    }
+
+    private CountedPage<T> queryPage(Map<String, Object> searchParams, Pageable page, LinkType linkType, CountStrategy countStrategy) {
 
         Specification<T> spec = buildSpecification(entityClass, searchParams, linkType);
 
-        return getRepository().findAll(spec, page);
+        Slice<T> slice = getRepository().findSlice(spec, page);
+        List<T> content = slice.getContent();
+        if (page.isUnpaged()) {
+            return new CountedPage<>(content, page, content.size(), false, countStrategy, true);
+        }
+
+        long offset = page.getOffset();
+        if (!slice.hasNext() && (offset == 0 || !content.isEmpty())) {
+            countMetrics.recordInferred();
+            return new CountedPage<>(content, page, offset + content.size(), false, countStrategy, true);
+        }
+
+        long total;
+        boolean exact;
+        switch (countStrategy) {
+            case CACHED:
+                String key = countKey(entityClass, searchParams, linkType);
+                Long cached = getCountCache().getIfPresent(key);
+                if (cached != null) {
+                    countMetrics.recordCacheHit();
+                    total = cached;
+                    exact = false;
+                } else {
+                    total = exactCount(spec);
+                    getCountCache().put(key, total);
+                    exact = true;
+                }
+                break;
+            case CAPPED:
+                long cap = getCountCap();
+                long start = System.nanoTime();
+                long n = getRepository().countAtMost(spec, cap + 1);
+                countMetrics.recordCapped(System.nanoTime() - start);
+                total = Math.min(n, cap);
+                exact = (n <= cap);
+                break;
+            default:
+                total = exactCount(spec);
+                exact = true;
+                break;
+        }
+
+        return new CountedPage<>(content, page, total, slice.hasNext(), countStrategy, exact);
     }
 
     /**
@@ -312,13 +510,205 @@ public abstract class SimpleGeneralService<T extends Entity<ID>, ID extends Seri
      */
     public Page<T> findPage(Map<String, Object> searchParams, int pageNumber, int pageSize, Sort sort, LinkType linkType) {
 
-        Class<T> entityClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
-
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
+
+        return findPage(searchParams, pageRequest, linkType, getCountStrategy());
+    }
+
+    /**
+     * 键集分页查询
+     * <p>
+     * 通过上一页最后一行的排序字段值定位下一页，不使用OFFSET、不查询总数，每页的耗时与翻到第几页无关
+     *
+     * @param searchParams 查询条件及值
+     * @param cursor       上一页返回的游标，第一页为null
+     * @param size         每页多少条
+     * @param sort         排序，只支持实体自身的属性
+     * @param linkType     or查询或者and查询
+     * @return
+     */
+    public KeysetSlice<T> findSlice(Map<String, Object> searchParams, KeysetCursor cursor, int size, Sort sort, LinkType linkType) {
+
+        if (sort != null) {
+            sort.forEach(order -> {
+                if (!entityMetadata.isSortable(order.getProperty())) {
+                    throw new ServiceException("不支持的排序字段：" + order.getProperty());
+                }
+            });
+        }
+
         Specification<T> spec = buildSpecification(entityClass, searchParams, linkType);
 
-        return getRepository().findAll(spec, pageRequest);
+        return getRepository().findSlice(spec, cursor, size, sort);
+    }
+
+    /**
+     * 按键集分页逐批遍历满足条件的数据，不查询总数、不使用OFFSET
+     * <br>
+     * 每批由一次仓库调用查询，不要在事务中遍历，否则已读取的实体会一直留在持久性上下文中
+     */
+    @Override
+    public Iterator<T> iterate(Map<String, Object> searchParams, Sort sort, int batchSize) {
+
+        return new AbstractIterator<T>() {
+
+            private Iterator<T> batch;
+            private KeysetCursor next;
+            private boolean last;
+
+            @Override
+            protected T computeNext() {
+
+                while (batch == null || !batch.hasNext()) {
+                    if (last) {
+                        return endOfData();
+                    }
+                    KeysetSlice<T> slice = findSlice(searchParams, next, batchSize, sort);
+                    batch = slice.getContent().iterator();
+                    next = KeysetCursor.decode(slice.getNextCursor());
+                    last = !slice.hasNext();
+                }
+                return batch.next();
+            }
+        };
+    }
+
+    /**
+     * 实体类型
+     *
+     * @return
+     */
+    public Class<T> getEntityClass() {
+
+        return entityClass;
     }
 
+    /**
+     * 实体的元数据：主键、可排序的属性、有索引的属性
+     *
+     * @return
+     */
+    public EntityMetadata getEntityMetadata() {
+
+        return entityMetadata;
+    }
+
+    /**
+     * 分页查询时总数的计算方式，子类可覆盖
+     * <p>
+     * NONE只用于{@link #findSlice(Map, Pageable)}，findPage需要总数，NONE时抛出IllegalArgumentException
+     *
+     * @return
+     */
+    protected CountStrategy getCountStrategy() {
+
+        return CountStrategy.EXACT;
+    }
+
+    /**
+     * CAPPED方式时总数的上限，子类可覆盖
+     *
+     * @return
+     */
+    protected long getCountCap() {
+
+        return DEFAULT_COUNT_CAP;
+    }
+
+    /**
+     * CACHED方式时总数的缓存时间，单位秒，子类可覆盖
+     *
+     * @return
+     */
+    protected long getCountCacheSeconds() {
+
+        return DEFAULT_COUNT_CACHE_SECONDS;
+    }
+
+    /**
+     * 分页查询总数的统计
+     *
+     * @return
+     */
+    public CountMetrics getCountMetrics() {
+
+        return countMetrics;
+    }
+
+    /**
+     * 是否合并相同的并发分页查询，子类可覆盖
+     * <p>
+     * 开启后，(实体、查询条件、连接方式、分页、总数计算方式)相同的并发调用只查询一次，共享同一个结果，
+     * 调用方不能修改返回的实体. 读写事务中的调用不合并.
+     *
+     * @return
+     */
+    protected boolean isSingleFlight() {
+
+        return false;
+    }
+
+    /**
+     * 分页查询合并的统计：实际执行、合并的次数
+     *
+     * @return
+     */
+    public SingleFlight<?, ?> getPageSingleFlight() {
+
+        return pageFlight;
+    }
+
+    // ====================
+
+    private long exactCount(Specification<T> spec) {
+
+        long start = System.nanoTime();
+        long total = getRepository().count(spec);
+        countMetrics.recordExact(System.nanoTime() - start);
+        return total;
+    }
+
+    private Cache<String, Long> getCountCache() {
+
+        Cache<String, Long> cache = countCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = countCache;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder()
+                            .maximumSize(1024)
+                            .expireAfterWrite(getCountCacheSeconds(), TimeUnit.SECONDS)
+                            .build();
+                    countCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 按名称排序的查询条件，数组的值转为List，使相同的条件equals、toString一致
+     */
+    private static Map<String, Object> normalize(Map<String, Object> searchParams) {
+
+        Map<String, Object> normalized = new TreeMap<>();
+        if (searchParams != null) {
+            searchParams.forEach((name, value) -> normalized.put(name,
+                    value instanceof Object[] ? Arrays.asList((Object[]) value) : value));
+        }
+        return normalized;
+    }
+
+    /**
+     * 总数缓存的key：实体 + 连接方式 + 按名称排序的查询条件及值
+     */
+    private static String countKey(Class<?> entityClass, Map<String, Object> searchParams, LinkType linkType) {
+
+        StringBuilder key = new StringBuilder(entityClass.getName()).append('|').append(linkType);
+        if (searchParams != null) {
+            key.append('|').append(normalize(searchParams));
+        }
+        return key.toString();
+    }
 
 }
@@ -12,7 +12,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -26,6 +25,7 @@ public class Collections3 {
 
     /**
      * 提取集合中的对象的两个属性(通过Getter函数), 组合成Map.
+     * getter按(类, 属性名)缓存，见{@link PropertyAccessors}.
      *
      * @param collection        来源集合.
      * @param keyPropertyName   要提取为Map中的Key值的属性名.
@@ -33,15 +33,11 @@ public class Collections3 {
      */
     public static Map extractToMap(final Collection collection, final String keyPropertyName,
                                    final String valuePropertyName) {
-        Map map = new HashMap(collection.size());
+        Map map = new HashMap(collection.size() * 4 / 3 + 1);
 
-        try {
-            for (Object obj : collection) {
-                map.put(PropertyUtils.getProperty(obj, keyPropertyName),
-                        PropertyUtils.getProperty(obj, valuePropertyName));
-            }
-        } catch (Exception e) {
-            throw Reflections.convertReflectionExceptionToUnchecked(e);
+        for (Object obj : collection) {
+            map.put(PropertyAccessors.getProperty(obj, keyPropertyName),
+                    PropertyAccessors.getProperty(obj, valuePropertyName));
         }
 
         return map;
@@ -56,12 +52,8 @@ public class Collections3 {
     public static List extractToList(final Collection collection, final String propertyName) {
         List list = new ArrayList(collection.size());
 
-        try {
-            for (Object obj : collection) {
-                list.add(PropertyUtils.getProperty(obj, propertyName));
-            }
-        } catch (Exception e) {
-            throw Reflections.convertReflectionExceptionToUnchecked(e);
+        for (Object obj : collection) {
+            list.add(PropertyAccessors.getProperty(obj, propertyName));
         }
 
         return list;
@@ -1,7 +1,14 @@
 package com.tmp.util;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -17,6 +24,11 @@ import javax.crypto.spec.SecretKeySpec;
  * 
  * 支持Hex与Base64两种编码方式.
  * 
+ * Mac、Cipher按线程缓存，密钥(及模式、初始向量)不变时不再重新init.
+ * 
+ * 大文件使用InputStream/OutputStream或Channel(如FileChannel)的版本, 按块处理, 内存占用与文件大小无关.
+ * 这些版本在读写之间会调用调用方的流, 流中可能再次使用本类, 因此每次创建新的Mac、Cipher, 不使用线程缓存.
+ * 
  * @author calvin
  */
 public class CryptoUtil {
@@ -29,8 +41,24 @@ public class CryptoUtil {
 	private static final int DEFAULT_AES_KEYSIZE = 128;
 	private static final int DEFAULT_IVSIZE = 16;
 
+	/**
+	 * 流式处理时每次读取的块大小
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
 	private static SecureRandom random = RandomUtil.secureRandom();
 
+	private static final ThreadLocal<CachedMac> HMACSHA1 = ThreadLocal.withInitial(() -> new CachedMac(HMACSHA1_ALG));
+	private static final ThreadLocal<CachedCipher> AES = ThreadLocal.withInitial(() -> new CachedCipher(AES_ALG));
+	private static final ThreadLocal<CachedCipher> AES_CBC = ThreadLocal.withInitial(() -> new CachedCipher(AES_CBC_ALG));
+
+	// Channel版本使用的DirectByteBuffer, 分配代价高, 按线程缓存; 输出多留两个块, 容纳Cipher缓存的不完整块及padding.
+	// 使用期间从缓存中取出, Channel中再次调用时分配新的, 见borrowChunk
+	private static final int INPUT_CHUNK_SIZE = CHUNK_SIZE;
+	private static final int OUTPUT_CHUNK_SIZE = CHUNK_SIZE + 2 * DEFAULT_IVSIZE;
+	private static final ThreadLocal<ByteBuffer> INPUT_CHUNK = new ThreadLocal<>();
+	private static final ThreadLocal<ByteBuffer> OUTPUT_CHUNK = new ThreadLocal<>();
+
 	// -- HMAC-SHA1 funciton --//
 	/**
 	 * 使用HMAC-SHA1进行消息签名, 返回字节数组,长度为20字节.
@@ -39,13 +67,55 @@ public class CryptoUtil {
 	 * @param key HMAC-SHA1密钥
 	 */
 	public static byte[] hmacSha1(byte[] input, byte[] key) {
+		return HMACSHA1.get().init(key).doFinal(input);
+	}
+
+	/**
+	 * 使用HMAC-SHA1对ByteBuffer中剩余的内容进行消息签名, 不复制到中间数组; 完成后position移到limit.
+	 * 
+	 * @param input 原始输入
+	 * @param key HMAC-SHA1密钥
+	 */
+	public static byte[] hmacSha1(ByteBuffer input, byte[] key) {
+		Mac mac = HMACSHA1.get().init(key);
+		mac.update(input);
+		return mac.doFinal();
+	}
+
+	/**
+	 * 使用HMAC-SHA1对输入流的全部内容进行消息签名, 不关闭输入流.
+	 * 
+	 * @param input 原始输入
+	 * @param key HMAC-SHA1密钥
+	 */
+	public static byte[] hmacSha1(InputStream input, byte[] key) throws IOException {
+		Mac mac = newMac(key);
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int read;
+		while ((read = input.read(buffer)) > -1) {
+			mac.update(buffer, 0, read);
+		}
+		return mac.doFinal();
+	}
+
+	/**
+	 * 使用HMAC-SHA1对Channel(如FileChannel)从当前位置到结尾的内容进行消息签名, 不关闭Channel.
+	 * 
+	 * @param input 原始输入
+	 * @param key HMAC-SHA1密钥
+	 */
+	public static byte[] hmacSha1(ReadableByteChannel input, byte[] key) throws IOException {
+		Mac mac = newMac(key);
+		ByteBuffer buffer = borrowChunk(INPUT_CHUNK, INPUT_CHUNK_SIZE);
 		try {
-			SecretKey secretKey = new SecretKeySpec(key, HMACSHA1_ALG);
-			Mac mac = Mac.getInstance(HMACSHA1_ALG);
-			mac.init(secretKey);
-			return mac.doFinal(input);
-		} catch (GeneralSecurityException e) {
-			throw ExceptionUtil.unchecked(e);
+			while (input.read(buffer) > -1) {
+				buffer.flip();
+				mac.update(buffer);
+				buffer.clear();
+			}
+			return mac.doFinal();
+		} finally {
+			INPUT_CHUNK.set(buffer);
 		}
 	}
 
@@ -58,7 +128,8 @@ public class CryptoUtil {
 	 */
 	public static boolean isMacValid(byte[] expected, byte[] input, byte[] key) {
 		byte[] actual = hmacSha1(input, key);
-		return Arrays.equals(expected, actual);
+		// 比较时间与不同的位置无关
+		return MessageDigest.isEqual(expected, actual);
 	}
 
 	/**
@@ -120,6 +191,93 @@ public class CryptoUtil {
 		return new String(decryptResult);
 	}
 
+	/**
+	 * 使用AES/CBC加密ByteBuffer中剩余的内容, 写入output, 不经过中间数组.
+	 * 
+	 * @param input 原始输入, 完成后position移到limit
+	 * @param output 输出, 剩余空间至少为{@link #aesEncryptedSize(int)}
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static int aesEncrypt(ByteBuffer input, ByteBuffer output, byte[] key, byte[] iv) {
+		return aes(input, output, key, iv, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * 使用AES/CBC解密ByteBuffer中剩余的内容, 写入output, 不经过中间数组.
+	 * 
+	 * @param input 加密的输入, 完成后position移到limit
+	 * @param output 输出, 剩余空间至少为input.remaining()
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static int aesDecrypt(ByteBuffer input, ByteBuffer output, byte[] key, byte[] iv) {
+		return aes(input, output, key, iv, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * 使用AES/CBC加密输入流的全部内容, 写入输出流; 按块处理, 不关闭输入流、输出流.
+	 * 
+	 * @param input 原始输入
+	 * @param output 加密后的输出
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static long aesEncrypt(InputStream input, OutputStream output, byte[] key, byte[] iv) throws IOException {
+		return aes(input, output, key, iv, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * 使用AES/CBC解密输入流的全部内容, 写入输出流; 按块处理, 不关闭输入流、输出流.
+	 * 
+	 * @param input 加密的输入
+	 * @param output 解密后的输出
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static long aesDecrypt(InputStream input, OutputStream output, byte[] key, byte[] iv) throws IOException {
+		return aes(input, output, key, iv, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * 使用AES/CBC加密Channel(如FileChannel)从当前位置到结尾的内容, 写入输出Channel; 经DirectByteBuffer按块处理, 不关闭Channel.
+	 * 
+	 * @param input 原始输入
+	 * @param output 加密后的输出
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static long aesEncrypt(ReadableByteChannel input, WritableByteChannel output, byte[] key, byte[] iv)
+			throws IOException {
+		return aes(input, output, key, iv, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * 使用AES/CBC解密Channel(如FileChannel)从当前位置到结尾的内容, 写入输出Channel; 经DirectByteBuffer按块处理, 不关闭Channel.
+	 * 
+	 * @param input 加密的输入
+	 * @param output 解密后的输出
+	 * @param key 符合AES要求的密钥
+	 * @param iv 初始向量
+	 * @return 写入output的字节数
+	 */
+	public static long aesDecrypt(ReadableByteChannel input, WritableByteChannel output, byte[] key, byte[] iv)
+			throws IOException {
+		return aes(input, output, key, iv, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * AES(PKCS5Padding)加密后的长度: 补齐到16字节的整数倍, 正好整数倍时再加16字节.
+	 */
+	public static int aesEncryptedSize(int inputLength) {
+		return (inputLength / DEFAULT_IVSIZE + 1) * DEFAULT_IVSIZE;
+	}
+
 	/**
 	 * 使用AES加密或解密无编码的原始字节数组, 返回无编码的字节数组结果.
 	 * 
@@ -128,14 +286,7 @@ public class CryptoUtil {
 	 * @param mode Cipher.ENCRYPT_MODE 或 Cipher.DECRYPT_MODE
 	 */
 	private static byte[] aes(byte[] input, byte[] key, int mode) {
-		try {
-			SecretKey secretKey = new SecretKeySpec(key, AES_ALG);
-			Cipher cipher = Cipher.getInstance(AES_ALG);
-			cipher.init(mode, secretKey);
-			return cipher.doFinal(input);
-		} catch (GeneralSecurityException e) {
-			throw ExceptionUtil.unchecked(e);
-		}
+		return AES.get().doFinal(mode, key, null, input);
 	}
 
 	/**
@@ -147,17 +298,108 @@ public class CryptoUtil {
 	 * @param mode Cipher.ENCRYPT_MODE 或 Cipher.DECRYPT_MODE
 	 */
 	private static byte[] aes(byte[] input, byte[] key, byte[] iv, int mode) {
+		return AES_CBC.get().doFinal(mode, key, iv, input);
+	}
+
+	private static int aes(ByteBuffer input, ByteBuffer output, byte[] key, byte[] iv, int mode) {
+		return AES_CBC.get().doFinal(mode, key, iv, input, output);
+	}
+
+	private static long aes(InputStream input, OutputStream output, byte[] key, byte[] iv, int mode) throws IOException {
+		Cipher cipher = newCipher(mode, key, iv);
+		byte[] in = new byte[CHUNK_SIZE];
+		byte[] out = new byte[CHUNK_SIZE + 2 * DEFAULT_IVSIZE];
+		try {
+			long total = 0;
+			int read;
+			while ((read = input.read(in)) > -1) {
+				int n = cipher.update(in, 0, read, out, 0);
+				output.write(out, 0, n);
+				total += n;
+			}
+			int n = cipher.doFinal(out, 0);
+			output.write(out, 0, n);
+			return total + n;
+		} catch (GeneralSecurityException e) {
+			throw ExceptionUtil.unchecked(e);
+		}
+	}
+
+	private static long aes(ReadableByteChannel input, WritableByteChannel output, byte[] key, byte[] iv, int mode)
+			throws IOException {
+		Cipher cipher = newCipher(mode, key, iv);
+		ByteBuffer in = borrowChunk(INPUT_CHUNK, INPUT_CHUNK_SIZE);
+		ByteBuffer out = borrowChunk(OUTPUT_CHUNK, OUTPUT_CHUNK_SIZE);
+		try {
+			long total = 0;
+			while (input.read(in) > -1) {
+				in.flip();
+				out.clear();
+				cipher.update(in, out);
+				total += writeFully(out, output);
+				in.clear();
+			}
+			// 输入已读完, 只输出Cipher缓存的最后一块及padding
+			in.limit(0);
+			out.clear();
+			cipher.doFinal(in, out);
+			return total + writeFully(out, output);
+		} catch (GeneralSecurityException e) {
+			throw ExceptionUtil.unchecked(e);
+		} finally {
+			INPUT_CHUNK.set(in);
+			OUTPUT_CHUNK.set(out);
+		}
+	}
+
+	/**
+	 * 流式处理使用的Mac, 每次新建
+	 */
+	private static Mac newMac(byte[] key) {
+		try {
+			Mac mac = Mac.getInstance(HMACSHA1_ALG);
+			mac.init(new SecretKeySpec(key, HMACSHA1_ALG));
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw ExceptionUtil.unchecked(e);
+		}
+	}
+
+	/**
+	 * 流式处理使用的Cipher, 每次新建
+	 */
+	private static Cipher newCipher(int mode, byte[] key, byte[] iv) {
 		try {
-			SecretKey secretKey = new SecretKeySpec(key, AES_ALG);
-			IvParameterSpec ivSpec = new IvParameterSpec(iv);
 			Cipher cipher = Cipher.getInstance(AES_CBC_ALG);
-			cipher.init(mode, secretKey, ivSpec);
-			return cipher.doFinal(input);
+			cipher.init(mode, new SecretKeySpec(key, AES_ALG), new IvParameterSpec(iv));
+			return cipher;
 		} catch (GeneralSecurityException e) {
 			throw ExceptionUtil.unchecked(e);
 		}
 	}
 
+	/**
+	 * 取出当前线程缓存的DirectByteBuffer(clear后), 用完后放回; 使用期间缓存为空, 嵌套的调用分配新的
+	 */
+	private static ByteBuffer borrowChunk(ThreadLocal<ByteBuffer> cache, int size) {
+		ByteBuffer buffer = cache.get();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		cache.set(null);
+		buffer.clear();
+		return buffer;
+	}
+
+	private static int writeFully(ByteBuffer buffer, WritableByteChannel output) throws IOException {
+		buffer.flip();
+		int n = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			output.write(buffer);
+		}
+		return n;
+	}
+
 	/**
 	 * 生成AES密钥,返回字节数组, 默认长度为128位(16字节).
 	 */
@@ -187,4 +429,98 @@ public class CryptoUtil {
 		random.nextBytes(bytes);
 		return bytes;
 	}
+
+	/**
+	 * 当前线程缓存的Mac, 密钥变化时才重新init; doFinal后Mac自动恢复为init后的状态
+	 */
+	private static final class CachedMac {
+
+		private final Mac mac;
+		private byte[] key;
+
+		CachedMac(String algorithm) {
+			try {
+				this.mac = Mac.getInstance(algorithm);
+			} catch (GeneralSecurityException e) {
+				throw ExceptionUtil.unchecked(e);
+			}
+		}
+
+		Mac init(byte[] newKey) {
+			if (key == null || !Arrays.equals(key, newKey)) {
+				try {
+					// 先清空, init失败时不会沿用旧的密钥
+					key = null;
+					mac.init(new SecretKeySpec(newKey, mac.getAlgorithm()));
+					key = newKey.clone();
+				} catch (GeneralSecurityException e) {
+					throw ExceptionUtil.unchecked(e);
+				}
+			} else {
+				// 上次使用时抛出异常可能留下未完成的数据
+				mac.reset();
+			}
+			return mac;
+		}
+	}
+
+	/**
+	 * 当前线程缓存的Cipher, 模式、密钥、初始向量都不变时不再重新init; doFinal后Cipher自动恢复为init后的状态
+	 */
+	private static final class CachedCipher {
+
+		private final Cipher cipher;
+		private int mode;
+		private byte[] key;
+		private byte[] iv;
+
+		CachedCipher(String transformation) {
+			try {
+				this.cipher = Cipher.getInstance(transformation);
+			} catch (GeneralSecurityException e) {
+				throw ExceptionUtil.unchecked(e);
+			}
+		}
+
+		byte[] doFinal(int newMode, byte[] newKey, byte[] newIv, byte[] input) {
+			try {
+				return init(newMode, newKey, newIv).doFinal(input);
+			} catch (GeneralSecurityException | RuntimeException e) {
+				invalidate();
+				throw ExceptionUtil.unchecked(e);
+			}
+		}
+
+		int doFinal(int newMode, byte[] newKey, byte[] newIv, ByteBuffer input, ByteBuffer output) {
+			try {
+				return init(newMode, newKey, newIv).doFinal(input, output);
+			} catch (GeneralSecurityException | RuntimeException e) {
+				invalidate();
+				throw ExceptionUtil.unchecked(e);
+			}
+		}
+
+		/**
+		 * 使用中抛出异常后Cipher可能处于未完成的状态, 下次使用时重新init
+		 */
+		void invalidate() {
+			key = null;
+		}
+
+		Cipher init(int newMode, byte[] newKey, byte[] newIv) throws GeneralSecurityException {
+			if (key == null || mode != newMode || !Arrays.equals(key, newKey) || !Arrays.equals(iv, newIv)) {
+				key = null;
+				SecretKey secretKey = new SecretKeySpec(newKey, AES_ALG);
+				if (newIv == null) {
+					cipher.init(newMode, secretKey);
+				} else {
+					cipher.init(newMode, secretKey, new IvParameterSpec(newIv));
+				}
+				mode = newMode;
+				key = newKey.clone();
+				iv = (newIv == null) ? null : newIv.clone();
+			}
+			return cipher;
+		}
+	}
 }
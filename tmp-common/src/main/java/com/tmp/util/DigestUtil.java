@@ -4,6 +4,10 @@ import org.apache.commons.lang3.Validate;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
@@ -12,20 +16,31 @@ import java.security.SecureRandom;
  * 支持SHA-1/MD5消息摘要的工具类
  * <p>
  * 返回ByteSource，可进一步被编码为Hex, Base64或UrlSafeBase64
+ * <p>
+ * MessageDigest按线程缓存，不再每次调用getInstance遍历JCA provider.
+ * InputStream、文件的版本散列期间会调用流的read，其中可能再次使用本类，因此每次创建新的MessageDigest，不使用线程缓存.
  */
 public class DigestUtil {
 
     private static final String SHA1 = "SHA-1";
     private static final String MD5 = "MD5";
 
+    /**
+     * 文件按区域依次映射，每个区域的大小；避免一次映射整个大文件(单个MappedByteBuffer不能超过2G)
+     */
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+
     private static SecureRandom random = new SecureRandom();
 
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST = ThreadLocal.withInitial(() -> newDigest(SHA1));
+    private static final ThreadLocal<MessageDigest> MD5_DIGEST = ThreadLocal.withInitial(() -> newDigest(MD5));
+
     /**
      * 对字符串进行散列, 支持md5与sha1算法.
      */
     private static byte[] digest(byte[] input, String algorithm, byte[] salt, int iterations) {
         try {
-            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            MessageDigest digest = getDigest(algorithm);
 
             if (salt != null) {
                 digest.update(salt);
@@ -33,9 +48,10 @@ public class DigestUtil {
 
             byte[] result = digest.digest(input);
 
+            // 每轮的结果写回同一个数组，不再每轮分配
             for (int i = 1; i < iterations; i++) {
-                digest.reset();
-                result = digest.digest(result);
+                digest.update(result);
+                digest.digest(result, 0, result.length);
             }
             return result;
         } catch (GeneralSecurityException e) {
@@ -44,18 +60,50 @@ public class DigestUtil {
     }
 
     private static byte[] digest(InputStream input, String algorithm) throws IOException {
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
-            int bufferLength = 8 * 1024;
-            byte[] buffer = new byte[bufferLength];
-            int read = input.read(buffer, 0, bufferLength);
-
-            while (read > -1) {
-                messageDigest.update(buffer, 0, read);
-                read = input.read(buffer, 0, bufferLength);
+        MessageDigest messageDigest = newDigest(algorithm);
+        int bufferLength = 8 * 1024;
+        byte[] buffer = new byte[bufferLength];
+        int read = input.read(buffer, 0, bufferLength);
+
+        while (read > -1) {
+            messageDigest.update(buffer, 0, read);
+            read = input.read(buffer, 0, bufferLength);
+        }
+
+        return messageDigest.digest();
+    }
+
+    private static byte[] digest(ByteBuffer input, String algorithm) {
+        MessageDigest messageDigest = getDigest(algorithm);
+        messageDigest.update(input);
+        return messageDigest.digest();
+    }
+
+    private static byte[] digest(Path file, String algorithm) throws IOException {
+        MessageDigest messageDigest = newDigest(algorithm);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+                messageDigest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_REGION_SIZE, size - position)));
             }
+        }
+        return messageDigest.digest();
+    }
 
-            return messageDigest.digest();
+    /**
+     * 当前线程缓存的MessageDigest，已reset
+     */
+    private static MessageDigest getDigest(String algorithm) {
+        MessageDigest digest = SHA1.equals(algorithm) ? SHA1_DIGEST.get() : MD5_DIGEST.get();
+        // 上次使用时抛出异常可能留下未完成的数据
+        digest.reset();
+        return digest;
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
         } catch (GeneralSecurityException e) {
             throw ExceptionUtil.unchecked(e);
         }
@@ -97,6 +145,20 @@ public class DigestUtil {
         return digest(input, SHA1);
     }
 
+    /**
+     * 对文件进行sha1散列，文件按区域内存映射后读取，不经过堆内的缓冲区.
+     */
+    public static byte[] sha1(Path file) throws IOException {
+        return digest(file, SHA1);
+    }
+
+    /**
+     * 对ByteBuffer中剩余的内容进行sha1散列，不复制到中间数组；完成后position移到limit.
+     */
+    public static byte[] sha1(ByteBuffer input) {
+        return digest(input, SHA1);
+    }
+
     /**
      * 对文件进行md5散列.
      */
@@ -104,5 +166,19 @@ public class DigestUtil {
         return digest(input, MD5);
     }
 
+    /**
+     * 对文件进行md5散列，文件按区域内存映射后读取，不经过堆内的缓冲区.
+     */
+    public static byte[] md5(Path file) throws IOException {
+        return digest(file, MD5);
+    }
+
+    /**
+     * 对ByteBuffer中剩余的内容进行md5散列，不复制到中间数组；完成后position移到limit.
+     */
+    public static byte[] md5(ByteBuffer input) {
+        return digest(input, MD5);
+    }
+
 
 }
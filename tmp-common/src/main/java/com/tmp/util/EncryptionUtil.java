@@ -2,7 +2,9 @@ package com.tmp.util;
 
 /**
  * 加密工具类
- * 
+ * <p>
+ * 登录、修改密码使用{@link PasswordService}：在专用的线程池中散列，新密码使用PBKDF2，
+ * 本类生成的已有散列仍可校验，登录成功后重新散列.
  */
 public class EncryptionUtil {
 
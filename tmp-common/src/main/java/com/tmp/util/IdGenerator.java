@@ -7,17 +7,51 @@ package com.tmp.util;
 
 import java.security.SecureRandom;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
 
 import com.google.common.annotations.Beta;
 
 /**
  * 封装各种生成唯一性ID算法的工具类.
+ * <p>
+ * 主键推荐使用按时间递增的{@link #nextId()}(Snowflake，64位long)或{@link #uuid7()}(32位字符串)，
+ * 插入落在聚簇索引的末尾，不像随机UUID那样分散写入、造成页分裂.
  */
 @Beta
 public class IdGenerator {
 
+    /**
+     * Snowflake的起始时间 2020-01-01T00:00:00Z，41位毫秒可用约69年
+     */
+    public static final long EPOCH = 1577836800000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // uuid7中rand_a的位数，用作同一毫秒内的计数
+    private static final int UUID7_COUNTER_BITS = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     private static SecureRandom random = new SecureRandom();
 
+    private static volatile ClockUtil clock = ClockUtil.DEFAULT;
+    private static volatile long workerBits = (long) workerIdFromProperty() << SEQUENCE_BITS;
+
+    /**
+     * (毫秒 - EPOCH) << 12 | 序号，CAS递增；时钟回拨时从上次的值继续递增，序号用尽时借用下一毫秒
+     */
+    private static final AtomicLong snowflakeState = new AtomicLong();
+
+    /**
+     * 每个线程的[上次的毫秒, 计数]
+     */
+    private static final ThreadLocal<long[]> uuid7State = ThreadLocal.withInitial(() -> new long[2]);
+
     /**
      * 封装JDK自带的UUID, 通过Random数字生成, 中间有-分割.
      */
@@ -29,7 +63,106 @@ public class IdGenerator {
      * 封装JDK自带的UUID, 通过Random数字生成, 中间无-分割.
      */
     public static String uuid2() {
-        return UUID.randomUUID().toString().replaceAll("-", "");
+        UUID uuid = UUID.randomUUID();
+        return toHex(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * 按时间递增的UUID(版本7)，32位小写十六进制，中间无-分割.
+     * <p>
+     * 前48位为毫秒时间戳，同一线程内严格递增(同一毫秒内递增计数)，不同线程之间按毫秒有序；
+     * 随机部分来自ThreadLocalRandom，不竞争SecureRandom，不能用作令牌等需要不可预测的场合.
+     */
+    public static String uuid7() {
+
+        long[] state = uuid7State.get();
+        long now = clock.getCurrentTimeInMillis();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        long millis;
+        long counter;
+        if (now > state[0]) {
+            // 新的毫秒，计数从随机的低半区开始，留出递增的空间
+            millis = now;
+            counter = rnd.nextInt(1 << (UUID7_COUNTER_BITS - 1));
+        } else {
+            // 同一毫秒或时钟回拨，沿用上次的毫秒继续计数，用尽时借用下一毫秒
+            millis = state[0];
+            counter = state[1] + 1;
+            if (counter >= (1 << UUID7_COUNTER_BITS)) {
+                millis++;
+                counter = 0;
+            }
+        }
+        state[0] = millis;
+        state[1] = counter;
+
+        long msb = (millis << 16) | (0x7L << 12) | counter;
+        long lsb = (rnd.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return toHex(msb, lsb);
+    }
+
+    /**
+     * 按时间递增的64位id(Snowflake)：41位毫秒(从{@link #EPOCH}起) + 10位worker id + 12位序号.
+     * <p>
+     * 无锁，每毫秒每个worker最多4096个，超出时借用下一毫秒；时钟回拨时不等待、不报错，从上次的时间继续递增.
+     * 多个节点必须配置不同的worker id，见{@link #setWorkerId(int)}.
+     */
+    public static long nextId() {
+
+        return toSnowflake(reserve(1));
+    }
+
+    /**
+     * 批量取得n个递增的id，一次CAS预留
+     *
+     * @param n 数量
+     * @return
+     */
+    public static long[] nextIds(int n) {
+
+        Validate.isTrue(n > 0, "n must be positive");
+        long first = reserve(n);
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = toSnowflake(first + i);
+        }
+        return ids;
+    }
+
+    /**
+     * 创建按块预留的id池
+     * <p>
+     * 每个线程一次预留blockSize个Snowflake id(一次CAS)，用完再预留下一块；
+     * 同一线程取得的id递增，不同线程之间大致按时间有序.
+     *
+     * @param blockSize 每块的数量
+     * @return
+     */
+    public static IdPool newPool(int blockSize) {
+
+        Validate.isTrue(blockSize > 0, "blockSize must be positive");
+        return new IdPool(blockSize);
+    }
+
+    /**
+     * 设置Snowflake的worker id，0-1023，默认取系统属性tmp.id.worker-id，没有时为0
+     */
+    public static void setWorkerId(int workerId) {
+
+        Validate.inclusiveBetween(0, MAX_WORKER_ID, workerId, "worker id must be between 0 and %d", MAX_WORKER_ID);
+        workerBits = (long) workerId << SEQUENCE_BITS;
+    }
+
+    public static int getWorkerId() {
+        return (int) (workerBits >>> SEQUENCE_BITS);
+    }
+
+    /**
+     * 设置时间提供者，用于测试
+     */
+    public static void setClock(ClockUtil clockUtil) {
+        clock = Validate.notNull(clockUtil);
     }
 
     /**
@@ -47,4 +180,76 @@ public class IdGenerator {
         random.nextBytes(randomBytes);
         return EncodeUtil.encodeBase64UrlSafe(randomBytes);
     }
+
+    // ====================
+
+    /**
+     * 预留n个连续的状态值，返回第一个
+     */
+    private static long reserve(int n) {
+
+        long floor = (clock.getCurrentTimeInMillis() - EPOCH) << SEQUENCE_BITS;
+        while (true) {
+            long last = snowflakeState.get();
+            long first = Math.max(floor, last + 1);
+            if (snowflakeState.compareAndSet(last, first + n - 1)) {
+                return first;
+            }
+        }
+    }
+
+    private static long toSnowflake(long state) {
+
+        long millis = state >>> SEQUENCE_BITS;
+        return (millis << (WORKER_BITS + SEQUENCE_BITS)) | workerBits | (state & SEQUENCE_MASK);
+    }
+
+    /**
+     * 按块预留的Snowflake id池，线程安全，见{@link IdGenerator#newPool(int)}
+     */
+    public static final class IdPool {
+
+        private final int blockSize;
+        // 每个线程的[下一个状态值, 块的结束(不包括)]
+        private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+        private IdPool(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public long next() {
+
+            long[] block = blocks.get();
+            if (block[0] == block[1]) {
+                block[0] = reserve(blockSize);
+                block[1] = block[0] + blockSize;
+            }
+            return toSnowflake(block[0]++);
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+    }
+
+    private static int workerIdFromProperty() {
+
+        String value = System.getProperty("tmp.id.worker-id");
+        if (value == null) {
+            return 0;
+        }
+        int workerId = Integer.parseInt(value.trim());
+        Validate.inclusiveBetween(0, MAX_WORKER_ID, workerId, "tmp.id.worker-id must be between 0 and %d", MAX_WORKER_ID);
+        return workerId;
+    }
+
+    private static String toHex(long msb, long lsb) {
+
+        char[] chars = new char[32];
+        for (int i = 0; i < 16; i++) {
+            chars[i] = HEX[(int) (msb >>> (60 - 4 * i)) & 0xf];
+            chars[16 + i] = HEX[(int) (lsb >>> (60 - 4 * i)) & 0xf];
+        }
+        return new String(chars);
+    }
 }
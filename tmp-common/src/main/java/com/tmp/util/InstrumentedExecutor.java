@@ -0,0 +1,202 @@
+package com.tmp.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 有界、带统计的线程池
+ * <p>
+ * 固定线程数、有界队列，队列满时抛出RejectedExecutionException(由调用方决定降级或返回繁忙)，不会无限堆积任务.
+ * 统计提交、拒绝、完成、失败的次数，以及任务在队列中等待、执行的平均耗时.
+ * 失败包括execute的任务抛出的异常、submit的任务以异常结束(Future中的异常)，以及{@link #supplyAsync(Supplier)}中抛出的异常；
+ * 直接传给CompletableFuture.supplyAsync的任务，异常在CompletableFuture内部处理，无法计入.
+ * 线程名由{@link Threads#buildJobFactory(String)}生成，关闭使用{@link Threads#gracefulShutdown}.
+ */
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder executionNanos = new LongAdder();
+
+    /**
+     * @param name          线程池名，线程名为"name-%d"
+     * @param threads       线程数
+     * @param queueCapacity 队列容量
+     */
+    public InstrumentedExecutor(String name, int threads, int queueCapacity) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                Threads.buildJobFactory(name + "-%d"), new ThreadPoolExecutor.AbortPolicy());
+        this.name = name;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+
+        try {
+            super.execute(new TimedTask(command));
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 在本线程池中执行，返回CompletableFuture；call抛出的异常计入失败数
+     * <p>
+     * 队列满时返回以RejectedExecutionException结束的CompletableFuture，不抛出.
+     *
+     * @param call 在线程池中执行的调用
+     * @return
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.get();
+                } catch (RuntimeException | Error e) {
+                    failed.increment();
+                    throw e;
+                }
+            }, this);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+
+        super.beforeExecute(t, r);
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.startNanos = System.nanoTime();
+            queueNanos.add(task.startNanos - task.submitNanos);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+
+        super.afterExecute(r, t);
+        Runnable task = r;
+        if (r instanceof TimedTask) {
+            executionNanos.add(System.nanoTime() - ((TimedTask) r).startNanos);
+            task = ((TimedTask) r).delegate;
+        }
+        finished.increment();
+        if (t != null || isFailed(task)) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * submit的任务(FutureTask)中的异常由Future返回，afterExecute收到的异常为null，从Future中取得结果
+     */
+    private static boolean isFailed(Runnable task) {
+
+        if (!(task instanceof Future) || !((Future<?>) task).isDone()) {
+            return false;
+        }
+        try {
+            ((Future<?>) task).get();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (CancellationException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 提交成功的任务数
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * 队列满被拒绝的任务数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 抛出异常的任务数，包括submit、{@link #supplyAsync(Supplier)}的任务
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * 在队列中等待的平均耗时，单位毫秒
+     */
+    public double getAvgQueueMillis() {
+        long n = finished.sum();
+        return n == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(queueNanos.sum()) / n / 1000;
+    }
+
+    /**
+     * 执行的平均耗时，单位毫秒
+     */
+    public double getAvgExecutionMillis() {
+        long n = finished.sum();
+        return n == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(executionNanos.sum()) / n / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedExecutor{name=" + name
+                + ", active=" + getActiveCount()
+                + ", queued=" + getQueue().size()
+                + ", submitted=" + getSubmitted()
+                + ", rejected=" + getRejected()
+                + ", completed=" + getCompletedTaskCount()
+                + ", failed=" + getFailed()
+                + ", avgQueueMillis=" + getAvgQueueMillis()
+                + ", avgExecutionMillis=" + getAvgExecutionMillis() + "}";
+    }
+
+    /**
+     * 记录提交时间的任务
+     */
+    private static final class TimedTask implements Runnable {
+
+        private final Runnable delegate;
+        private final long submitNanos = System.nanoTime();
+        private long startNanos;
+
+        TimedTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+}
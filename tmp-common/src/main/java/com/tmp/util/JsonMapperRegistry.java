@@ -0,0 +1,115 @@
+package com.tmp.util;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+/**
+ * 预先构建好的ObjectMapper注册表.
+ * <p>
+ * 每种输出风格的ObjectMapper只在类加载时创建、配置一次，之后不再修改；
+ * 对外只提供不可变、线程安全的ObjectReader/ObjectWriter，使Jackson内部的序列化器/反序列化器缓存能在每次调用之间复用.
+ * <p>
+ * 如需在某种风格的基础上做进一步的设置，请使用{@link #copyOf(Style)}取得一个副本，不要修改注册表中的实例.
+ */
+public final class JsonMapperRegistry {
+
+    /**
+     * 输出风格
+     */
+    public enum Style {
+        /**
+         * 只输出非Null且非Empty(如List.isEmpty)的属性，java属性与json属性名称一样
+         */
+        NON_EMPTY,
+
+        /**
+         * 只输出初始值被改变的属性，java属性与json属性名称一样
+         */
+        NON_DEFAULT,
+
+        /**
+         * 只输出非Null且非Empty(如List.isEmpty)的属性，java属性是驼峰式、json属性是下划线
+         */
+        SNAKE_CASE
+    }
+
+    private static final Map<Style, ObjectMapper> MAPPERS = new EnumMap<>(Style.class);
+    private static final Map<Style, ObjectReader> READERS = new EnumMap<>(Style.class);
+    private static final Map<Style, ObjectWriter> WRITERS = new EnumMap<>(Style.class);
+
+    static {
+        register(Style.NON_EMPTY, JsonMapperUtil.nonEmptyMapper().getObjectMapper());
+        register(Style.NON_DEFAULT, JsonMapperUtil.nonDefaultMapper().getObjectMapper());
+
+        ObjectMapper snakeCase = JsonMapperUtil.nonEmptyMapper().getObjectMapper();
+        // java属性是驼峰式、json属性是下划线
+        snakeCase.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+        register(Style.SNAKE_CASE, snakeCase);
+    }
+
+    private JsonMapperRegistry() {
+    }
+
+    private static void register(Style style, ObjectMapper mapper) {
+
+        MAPPERS.put(style, mapper);
+        READERS.put(style, mapper.reader());
+        WRITERS.put(style, mapper.writer());
+    }
+
+    /**
+     * 取得指定风格的ObjectWriter
+     */
+    public static ObjectWriter writer(Style style) {
+
+        return WRITERS.get(style);
+    }
+
+    /**
+     * 取得指定风格的ObjectReader，未绑定类型
+     */
+    public static ObjectReader reader(Style style) {
+
+        return READERS.get(style);
+    }
+
+    /**
+     * 取得指定风格、绑定了目标类型的ObjectReader
+     */
+    public static ObjectReader reader(Style style, Class<?> clazz) {
+
+        return READERS.get(style).forType(clazz);
+    }
+
+    /**
+     * 取得指定风格、绑定了目标类型的ObjectReader，用于复杂的泛型类型
+     */
+    public static ObjectReader reader(Style style, JavaType javaType) {
+
+        return READERS.get(style).forType(javaType);
+    }
+
+    /**
+     * 构造Collection类型.
+     */
+    public static JavaType constructCollectionType(Class<? extends Collection> collectionClass, Class<?> elementClass) {
+
+        return TypeFactory.defaultInstance().constructCollectionType(collectionClass, elementClass);
+    }
+
+    /**
+     * 复制一个指定风格的ObjectMapper，副本可以自由修改，不影响注册表
+     */
+    public static ObjectMapper copyOf(Style style) {
+
+        return MAPPERS.get(style).copy();
+    }
+}
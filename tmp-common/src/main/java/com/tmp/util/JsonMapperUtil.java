@@ -3,8 +3,10 @@ package com.tmp.util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.util.JSONPObject;
+import com.tmp.util.JsonMapperRegistry.Style;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -217,8 +219,7 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static String toSameJson(Object obj) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        return mapper.toJson(obj);
+        return write(JsonMapperRegistry.writer(Style.NON_EMPTY), obj);
     }
 
     /**
@@ -228,8 +229,7 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static <T> T fromSameJ(String jsonString, Class<T> clazz) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        return mapper.fromJson(jsonString, clazz);
+        return read(JsonMapperRegistry.reader(Style.NON_EMPTY, clazz), jsonString);
     }
 
     /**
@@ -239,8 +239,7 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static <T> T fromSameJ(String jsonString, JavaType javaType) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        return mapper.fromJson(jsonString, javaType);
+        return read(JsonMapperRegistry.reader(Style.NON_EMPTY, javaType), jsonString);
     }
 
     /**
@@ -250,8 +249,8 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static <T> List<T> fromSameJList(String jsonString, Class<T> clazz) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        return mapper.fromJson(jsonString, mapper.constructCollectionType(List.class, clazz));
+        JavaType javaType = JsonMapperRegistry.constructCollectionType(List.class, clazz);
+        return read(JsonMapperRegistry.reader(Style.NON_EMPTY, javaType), jsonString);
     }
 
     /**
@@ -268,10 +267,7 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static String toJ(Object obj) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        // java属性是驼峰式、json属性是下划线
-        mapper.getObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
-        return mapper.toJson(obj);
+        return write(JsonMapperRegistry.writer(Style.SNAKE_CASE), obj);
     }
 
     /**
@@ -281,10 +277,7 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static <T> T fromJ(String jsonString, Class<T> clazz) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        // java属性是驼峰式、json属性是下划线
-        mapper.getObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
-        return mapper.fromJson(jsonString, clazz);
+        return read(JsonMapperRegistry.reader(Style.SNAKE_CASE, clazz), jsonString);
     }
 
     /**
@@ -294,10 +287,8 @@ public class JsonMapperUtil extends JacksonObjectMapper {
      */
     public static <T> List<T> fromJList(String jsonString, Class<T> clazz) {
 
-        JsonMapperUtil mapper = JsonMapperUtil.nonEmptyMapper();
-        // java属性是驼峰式、json属性是下划线
-        mapper.getObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
-        return mapper.fromJson(jsonString, mapper.constructCollectionType(List.class, clazz));
+        JavaType javaType = JsonMapperRegistry.constructCollectionType(List.class, clazz);
+        return read(JsonMapperRegistry.reader(Style.SNAKE_CASE, javaType), jsonString);
     }
 
     /**
@@ -313,4 +304,34 @@ public class JsonMapperUtil extends JacksonObjectMapper {
 
         return JsonMapperUtil.fromSameJ(JsonMapperUtil.toSameJson(source), destinationType);
     }
+
+    /**
+     * 使用共享的ObjectWriter输出json字符串，出错时返回null
+     */
+    private static String write(ObjectWriter writer, Object object) {
+
+        try {
+            return writer.writeValueAsString(object);
+        } catch (IOException e) {
+            logger.warn("write to json string error:" + object, e);
+            return null;
+        }
+    }
+
+    /**
+     * 使用共享的、已绑定类型的ObjectReader解析json字符串，出错时返回null
+     */
+    private static <T> T read(ObjectReader reader, String jsonString) {
+
+        if (StringUtils.isEmpty(jsonString)) {
+            return null;
+        }
+
+        try {
+            return reader.readValue(jsonString);
+        } catch (IOException e) {
+            logger.warn("parse json string error:" + jsonString, e);
+            return null;
+        }
+    }
 }
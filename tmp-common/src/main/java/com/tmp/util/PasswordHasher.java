@@ -0,0 +1,30 @@
+package com.tmp.util;
+
+/**
+ * 密码散列算法
+ * <p>
+ * 散列结果(encoded)包含算法需要的全部参数(salt、迭代次数等)，由{@link PasswordService}在前面加上"{id}"后保存.
+ * 实现必须线程安全.
+ */
+public interface PasswordHasher {
+
+    /**
+     * 算法标识，保存的散列以"{id}"开头
+     */
+    String getId();
+
+    /**
+     * 生成随机的salt并散列
+     */
+    String hash(String plainPassword);
+
+    /**
+     * 校验密码，比较时间与不同的位置无关；encoded格式不正确时返回false
+     */
+    boolean matches(String plainPassword, String encoded);
+
+    /**
+     * 散列的参数低于当前配置(如迭代次数)，登录成功后应重新散列
+     */
+    boolean needsRehash(String encoded);
+}
@@ -0,0 +1,227 @@
+package com.tmp.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * 密码散列服务
+ * <p>
+ * 散列是CPU密集的计算，在专用的有界线程池中执行(线程数按CPU核数)，不占用Tomcat的请求线程；
+ * 队列满时返回以RejectedExecutionException结束的CompletableFuture(控制器中返回503)，不会无限堆积.
+ * <p>
+ * 保存的散列为"{id}encoded"，id见{@link PasswordHasher#getId()}；新的散列使用默认算法.
+ * 没有"{id}"前缀的是{@link EncryptionUtil#encryptionPassword}生成的已有数据，salt单独保存，按{@link Sha1PasswordHasher}校验.
+ * 校验成功且散列不是默认算法、或参数低于当前配置时，同时返回重新散列的结果，由调用方保存(rehash-on-login).
+ * <p>
+ * 按算法统计每次散列的次数与耗时.
+ */
+public class PasswordService {
+
+    private static final char ID_PREFIX = '{';
+    private static final char ID_SUFFIX = '}';
+
+    private final InstrumentedExecutor executor;
+    private final PasswordHasher defaultHasher;
+    private final Map<String, PasswordHasher> hashers = new LinkedHashMap<>();
+    private final Map<String, HashStats> stats = new LinkedHashMap<>();
+
+    /**
+     * @param executor      执行散列的有界线程池
+     * @param defaultHasher 新散列使用的算法
+     * @param hashers       只用于校验已有散列的算法
+     */
+    public PasswordService(InstrumentedExecutor executor, PasswordHasher defaultHasher, PasswordHasher... hashers) {
+
+        this.executor = Validate.notNull(executor);
+        this.defaultHasher = Validate.notNull(defaultHasher);
+        register(defaultHasher);
+        for (PasswordHasher hasher : hashers) {
+            register(hasher);
+        }
+    }
+
+    private void register(PasswordHasher hasher) {
+        Validate.isTrue(!hashers.containsKey(hasher.getId()), "duplicate password hasher: %s", hasher.getId());
+        hashers.put(hasher.getId(), hasher);
+        stats.put(hasher.getId(), new HashStats());
+    }
+
+    /**
+     * 用默认算法散列密码
+     *
+     * @return 保存的散列，"{id}encoded"
+     */
+    public CompletableFuture<String> hash(String plainPassword) {
+
+        Validate.notNull(plainPassword);
+        return executor.supplyAsync(() -> hashWith(defaultHasher, plainPassword));
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param plainPassword  输入的密码
+     * @param hashedPassword 保存的散列
+     * @param salt           已有数据单独保存的salt(hex)，hashedPassword带"{id}"前缀时忽略
+     * @return 校验结果，需要重新散列时包含新的散列
+     */
+    public CompletableFuture<PasswordVerification> verify(String plainPassword, String hashedPassword, String salt) {
+
+        Validate.notNull(plainPassword);
+        if (StringUtils.isEmpty(hashedPassword)) {
+            return CompletableFuture.completedFuture(PasswordVerification.MISMATCHED);
+        }
+
+        PasswordHasher hasher;
+        String encoded;
+        if (hashedPassword.charAt(0) == ID_PREFIX) {
+            hasher = hashers.get(StringUtils.substringBetween(hashedPassword, String.valueOf(ID_PREFIX), String.valueOf(ID_SUFFIX)));
+            encoded = StringUtils.substringAfter(hashedPassword, String.valueOf(ID_SUFFIX));
+        } else {
+            hasher = hashers.get(Sha1PasswordHasher.ID);
+            encoded = (salt == null ? "" : salt) + '$' + hashedPassword;
+        }
+        if (hasher == null) {
+            // 没有注册的算法无法校验
+            return CompletableFuture.completedFuture(PasswordVerification.MISMATCHED);
+        }
+
+        return executor.supplyAsync(() -> {
+            if (!matchWith(hasher, plainPassword, encoded)) {
+                return PasswordVerification.MISMATCHED;
+            }
+            if (hasher != defaultHasher || hasher.needsRehash(encoded)) {
+                return new PasswordVerification(true, hashWith(defaultHasher, plainPassword));
+            }
+            return PasswordVerification.MATCHED;
+        });
+    }
+
+    /**
+     * 默认算法的标识
+     */
+    public String getDefaultId() {
+        return defaultHasher.getId();
+    }
+
+    /**
+     * 按算法的统计，算法标识 -> 统计
+     */
+    public Map<String, HashStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Override
+    public String toString() {
+        return "PasswordService{default=" + defaultHasher.getId() + ", stats=" + stats + ", executor=" + executor + "}";
+    }
+
+    // ====================
+
+    private String hashWith(PasswordHasher hasher, String plainPassword) {
+
+        long start = System.nanoTime();
+        String encoded = hasher.hash(plainPassword);
+        stats.get(hasher.getId()).record(System.nanoTime() - start);
+        return ID_PREFIX + hasher.getId() + ID_SUFFIX + encoded;
+    }
+
+    private boolean matchWith(PasswordHasher hasher, String plainPassword, String encoded) {
+
+        long start = System.nanoTime();
+        boolean matched = hasher.matches(plainPassword, encoded);
+        stats.get(hasher.getId()).record(System.nanoTime() - start);
+        return matched;
+    }
+
+    /**
+     * 校验结果
+     */
+    public static final class PasswordVerification {
+
+        static final PasswordVerification MATCHED = new PasswordVerification(true, null);
+        static final PasswordVerification MISMATCHED = new PasswordVerification(false, null);
+
+        private final boolean matched;
+        private final String rehashed;
+
+        PasswordVerification(boolean matched, String rehashed) {
+            this.matched = matched;
+            this.rehashed = rehashed;
+        }
+
+        /**
+         * 密码是否正确
+         */
+        public boolean isMatched() {
+            return matched;
+        }
+
+        /**
+         * 是否需要保存新的散列
+         */
+        public boolean isRehashed() {
+            return rehashed != null;
+        }
+
+        /**
+         * 用默认算法重新散列的结果，不需要时为null；已有数据单独保存的salt同时可以清空
+         */
+        public String getRehashed() {
+            return rehashed;
+        }
+
+        @Override
+        public String toString() {
+            return "PasswordVerification{matched=" + matched + ", rehashed=" + isRehashed() + "}";
+        }
+    }
+
+    /**
+     * 一种算法的散列次数与耗时(散列、校验都计入)
+     */
+    public static final class HashStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long elapsedNanos) {
+            count.increment();
+            nanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * 平均耗时，单位毫秒
+         */
+        public double getAvgMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(nanos.sum()) / n / 1000;
+        }
+
+        /**
+         * 最大耗时，单位毫秒
+         */
+        public double getMaxMillis() {
+            return (double) TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return "HashStats{count=" + getCount() + ", avgMillis=" + getAvgMillis() + ", maxMillis=" + getMaxMillis() + "}";
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.tmp.util;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * PBKDF2-HMAC-SHA256
+ * <p>
+ * encoded为"迭代次数$base64(salt)$base64(hash)"，迭代次数低于当前配置的散列在登录成功后重新散列.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "pbkdf2-sha256";
+
+    /**
+     * 默认的迭代次数
+     */
+    public static final int DEFAULT_ITERATIONS = 310000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_SIZE = 16;
+    private static final int HASH_SIZE = 32;
+
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw ExceptionUtil.unchecked(e);
+        }
+    });
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param iterations 迭代次数
+     */
+    public Pbkdf2PasswordHasher(int iterations) {
+        Validate.isTrue(iterations > 0, "iterations must be positive: %d", iterations);
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String plainPassword) {
+
+        byte[] salt = DigestUtil.generateSalt(SALT_SIZE);
+        byte[] hash = pbkdf2(plainPassword, salt, iterations, HASH_SIZE);
+        return iterations + "$" + EncodeUtil.encodeBase64(salt) + '$' + EncodeUtil.encodeBase64(hash);
+    }
+
+    @Override
+    public boolean matches(String plainPassword, String encoded) {
+
+        String[] parts = StringUtils.split(encoded, '$');
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int encodedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = EncodeUtil.decodeBase64(parts[1]);
+            byte[] expected = EncodeUtil.decodeBase64(parts[2]);
+            if (encodedIterations <= 0 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, pbkdf2(plainPassword, salt, encodedIterations, expected.length));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        try {
+            return Integer.parseInt(StringUtils.substringBefore(encoded, "$")) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String plainPassword, byte[] salt, int iterations, int length) {
+
+        PBEKeySpec spec = new PBEKeySpec(plainPassword.toCharArray(), salt, iterations, length * 8);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw ExceptionUtil.unchecked(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.tmp.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 属性访问器工厂.
+ * <p>
+ * 每个(类, 属性名)只解析一次，缓存为{@link Function}(读)、{@link BiConsumer}(写)：
+ * <ul>
+ * <li>public类的public getter/setter，且类对本工具类的ClassLoader可见时，通过LambdaMetafactory生成，调用开销与直接调用接近</li>
+ * <li>其他情况(非public方法、字段、不可见的类)使用MethodHandle</li>
+ * </ul>
+ * CGLIB代理的类按被代理的类解析、缓存. 缓存基于ClassValue，类被卸载(如devtools重启)时随之释放.
+ */
+public final class PropertyAccessors {
+
+    private static final String GETTER_PREFIX = "get";
+    private static final String IS_PREFIX = "is";
+    private static final String SETTER_PREFIX = "set";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<ClassAccessors> ACCESSORS = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            Class<?> userClass = Reflections.getUserClass(type);
+            return (userClass == type) ? new ClassAccessors(type) : ACCESSORS.get(userClass);
+        }
+    };
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * 取得getter方法(getXxx，boolean属性也可以是isXxx)的访问器
+     *
+     * @param clazz    类型
+     * @param property 属性名
+     * @return 没有getter时返回null
+     */
+    public static Function<Object, Object> getter(Class<?> clazz, String property) {
+
+        Validate.notBlank(property, "property can't be blank");
+        ClassAccessors accessors = ACCESSORS.get(clazz);
+        return accessors.getters.computeIfAbsent(property, name -> resolveGetter(accessors.type, name));
+    }
+
+    /**
+     * 取得setter方法(setXxx，一个参数)的访问器
+     *
+     * @param clazz    类型
+     * @param property 属性名
+     * @return 没有setter时返回null
+     */
+    public static BiConsumer<Object, Object> setter(Class<?> clazz, String property) {
+
+        Validate.notBlank(property, "property can't be blank");
+        ClassAccessors accessors = ACCESSORS.get(clazz);
+        return accessors.setters.computeIfAbsent(property, name -> resolveSetter(accessors.type, name));
+    }
+
+    /**
+     * 取得直接读字段的访问器，无视private/protected修饰符
+     *
+     * @param clazz     类型
+     * @param fieldName 字段名
+     * @return 没有该字段时返回null
+     */
+    public static Function<Object, Object> fieldGetter(Class<?> clazz, String fieldName) {
+
+        Validate.notBlank(fieldName, "fieldName can't be blank");
+        ClassAccessors accessors = ACCESSORS.get(clazz);
+        return accessors.fieldGetters.computeIfAbsent(fieldName, name -> resolveFieldGetter(accessors.type, name));
+    }
+
+    /**
+     * 取得直接写字段的访问器，无视private/protected修饰符
+     *
+     * @param clazz     类型
+     * @param fieldName 字段名
+     * @return 没有该字段时返回null
+     */
+    public static BiConsumer<Object, Object> fieldSetter(Class<?> clazz, String fieldName) {
+
+        Validate.notBlank(fieldName, "fieldName can't be blank");
+        ClassAccessors accessors = ACCESSORS.get(clazz);
+        return accessors.fieldSetters.computeIfAbsent(fieldName, name -> resolveFieldSetter(accessors.type, name));
+    }
+
+    /**
+     * 读取对象的属性值
+     * <p>
+     * 简单属性通过缓存的getter读取；嵌套属性(a.b)、索引属性(a[0])、Map等交给commons-beanutils的PropertyUtils.
+     *
+     * @param bean     对象
+     * @param property 属性名
+     * @return
+     */
+    public static Object getProperty(Object bean, String property) {
+
+        Validate.notNull(bean, "bean can't be null");
+        if (!(bean instanceof Map) && StringUtils.containsNone(property, '.', '[', '(')) {
+            Function<Object, Object> getter = getter(bean.getClass(), property);
+            if (getter != null) {
+                return getter.apply(bean);
+            }
+        }
+
+        try {
+            return PropertyUtils.getProperty(bean, property);
+        } catch (Exception e) {
+            throw Reflections.convertReflectionExceptionToUnchecked(e);
+        }
+    }
+
+    // ====================
+
+    private static Function<Object, Object> resolveGetter(Class<?> type, String property) {
+
+        String capitalized = StringUtils.capitalize(property);
+        Method method = findMethod(type, GETTER_PREFIX + capitalized, 0);
+        if (method == null || method.getReturnType() == void.class) {
+            method = findMethod(type, IS_PREFIX + capitalized, 0);
+            if (method != null && method.getReturnType() != boolean.class && method.getReturnType() != Boolean.class) {
+                method = null;
+            }
+        }
+        if (method == null) {
+            return null;
+        }
+
+        try {
+            if (canGenerate(type, method)) {
+                MethodHandle handle = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                        GETTER_TYPE, handle, handle.type().wrap());
+                return (Function<Object, Object>) site.getTarget().invoke();
+            }
+            Reflections.makeAccessible(null, method);
+            return new HandleGetter(LOOKUP.unreflect(method).asType(GETTER_TYPE));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create getter [" + property + "] on " + type.getName(), e);
+        }
+    }
+
+    private static BiConsumer<Object, Object> resolveSetter(Class<?> type, String property) {
+
+        Method method = findMethod(type, SETTER_PREFIX + StringUtils.capitalize(property), 1);
+        if (method == null) {
+            return null;
+        }
+
+        try {
+            if (canGenerate(type, method)) {
+                MethodHandle handle = LOOKUP.unreflect(method);
+                MethodType instantiated = MethodType.methodType(void.class, handle.type().parameterType(0),
+                        handle.type().wrap().parameterType(1));
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+                        SETTER_TYPE, handle, instantiated);
+                return (BiConsumer<Object, Object>) site.getTarget().invoke();
+            }
+            Reflections.makeAccessible(null, method);
+            // 有返回值的setter(链式调用)，返回值被丢弃
+            return new HandleSetter(LOOKUP.unreflect(method).asType(SETTER_TYPE));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create setter [" + property + "] on " + type.getName(), e);
+        }
+    }
+
+    private static Function<Object, Object> resolveFieldGetter(Class<?> type, String fieldName) {
+
+        Field field = findField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+
+        try {
+            MethodHandle handle = LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return new HandleGetter(handle.asType(GETTER_TYPE));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not create field getter [" + fieldName + "] on " + type.getName(), e);
+        }
+    }
+
+    private static BiConsumer<Object, Object> resolveFieldSetter(Class<?> type, String fieldName) {
+
+        Field field = findField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+
+        // final字段不能通过MethodHandle写入，保持原来反射的方式
+        if (Modifier.isFinal(field.getModifiers())) {
+            return (obj, value) -> {
+                try {
+                    field.set(obj, value);
+                } catch (IllegalAccessException e) {
+                    throw Reflections.convertReflectionExceptionToUnchecked(e);
+                }
+            };
+        }
+
+        try {
+            MethodHandle handle = LOOKUP.unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return new HandleSetter(handle.asType(SETTER_TYPE));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not create field setter [" + fieldName + "] on " + type.getName(), e);
+        }
+    }
+
+    /**
+     * 生成的lambda类以本工具类为宿主，要求方法、类都是public，且目标类对本工具类的ClassLoader可见
+     */
+    private static boolean canGenerate(Class<?> type, Method method) {
+
+        return Modifier.isPublic(method.getModifiers())
+                && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                && Modifier.isPublic(type.getModifiers())
+                && ClassUtils.isVisible(type, PropertyAccessors.class.getClassLoader());
+    }
+
+    /**
+     * 先找public方法(包括接口的默认方法)，再循环向上转型找非public方法
+     */
+    private static Method findMethod(Class<?> type, String name, int parameterCount) {
+
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == parameterCount && !method.isBridge()) {
+                return method;
+            }
+        }
+        for (Class<?> searchType = type; searchType != null && searchType != Object.class; searchType = searchType.getSuperclass()) {
+            for (Method method : searchType.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == parameterCount && !method.isBridge()) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> type, String fieldName) {
+
+        for (Class<?> searchType = type; searchType != null && searchType != Object.class; searchType = searchType.getSuperclass()) {
+            try {
+                Field field = searchType.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {// NOSONAR
+                // Field不在当前类定义,继续向上转型
+            }
+        }
+        return null;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new RuntimeException(e);
+    }
+
+    /**
+     * 一个类的所有访问器
+     */
+    private static final class ClassAccessors {
+
+        private final Class<?> type;
+        private final ConcurrentMap<String, Function<Object, Object>> getters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, BiConsumer<Object, Object>> setters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Function<Object, Object>> fieldGetters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, BiConsumer<Object, Object>> fieldSetters = new ConcurrentHashMap<>();
+
+        ClassAccessors(Class<?> type) {
+            this.type = type;
+        }
+    }
+
+    private static final class HandleGetter implements Function<Object, Object> {
+
+        private final MethodHandle handle;
+
+        HandleGetter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object apply(Object obj) {
+            try {
+                return handle.invokeExact(obj);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    private static final class HandleSetter implements BiConsumer<Object, Object> {
+
+        private final MethodHandle handle;
+
+        HandleSetter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void accept(Object obj, Object value) {
+            try {
+                handle.invokeExact(obj, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+}
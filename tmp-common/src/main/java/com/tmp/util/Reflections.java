@@ -11,6 +11,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * 反射工具类.
@@ -28,55 +30,57 @@ public class Reflections {
     private static Logger logger = LoggerFactory.getLogger(Reflections.class);
 
     /**
-     * 调用Getter方法.
+     * 调用Getter方法，访问器按(类, 属性名)缓存，见{@link PropertyAccessors}.
      */
     public static Object invokeGetter(Object obj, String propertyName) {
-        String getterMethodName = GETTER_PREFIX + StringUtils.capitalize(propertyName);
-        return invokeMethod(obj, getterMethodName, new Class[] {}, new Object[] {});
+        Validate.notNull(obj, "object can't be null");
+        Function<Object, Object> getter = PropertyAccessors.getter(obj.getClass(), propertyName);
+        if (getter == null) {
+            String getterMethodName = GETTER_PREFIX + StringUtils.capitalize(propertyName);
+            throw new IllegalArgumentException("Could not find method [" + getterMethodName + "] on target [" + obj + "]");
+        }
+        return getter.apply(obj);
     }
 
     /**
-     * 调用Setter方法, 仅匹配方法名。
+     * 调用Setter方法, 匹配方法名及一个参数，访问器按(类, 属性名)缓存.
      */
     public static void invokeSetter(Object obj, String propertyName, Object value) {
-        String setterMethodName = SETTER_PREFIX + StringUtils.capitalize(propertyName);
-        invokeMethodByName(obj, setterMethodName, new Object[] { value });
+        Validate.notNull(obj, "object can't be null");
+        BiConsumer<Object, Object> setter = PropertyAccessors.setter(obj.getClass(), propertyName);
+        if (setter == null) {
+            String setterMethodName = SETTER_PREFIX + StringUtils.capitalize(propertyName);
+            throw new IllegalArgumentException("Could not find method [" + setterMethodName + "] on target [" + obj + "]");
+        }
+        setter.accept(obj, value);
     }
 
     /**
      * 直接读取对象属性值, 无视private/protected修饰符, 不经过getter函数.
      */
     public static Object getFieldValue(final Object obj, final String fieldName) {
-        Field field = getAccessibleField(obj, fieldName);
+        Validate.notNull(obj, "object can't be null");
+        Function<Object, Object> getter = PropertyAccessors.fieldGetter(obj.getClass(), fieldName);
 
-        if (field == null) {
+        if (getter == null) {
             throw new IllegalArgumentException("Could not find field [" + fieldName + "] on target [" + obj + "]");
         }
 
-        Object result = null;
-        try {
-            result = field.get(obj);
-        } catch (IllegalAccessException e) {
-            logger.error("不可能抛出的异常{}", e.getMessage());
-        }
-        return result;
+        return getter.apply(obj);
     }
 
     /**
      * 直接设置对象属性值, 无视private/protected修饰符, 不经过setter函数.
      */
     public static void setFieldValue(final Object obj, final String fieldName, final Object value) {
-        Field field = getAccessibleField(obj, fieldName);
+        Validate.notNull(obj, "object can't be null");
+        BiConsumer<Object, Object> setter = PropertyAccessors.fieldSetter(obj.getClass(), fieldName);
 
-        if (field == null) {
+        if (setter == null) {
             throw new IllegalArgumentException("Could not find field [" + fieldName + "] on target [" + obj + "]");
         }
 
-        try {
-            field.set(obj, value);
-        } catch (IllegalAccessException e) {
-            logger.error("不可能抛出的异常:{}", e.getMessage());
-        }
+        setter.accept(obj, value);
     }
 
     /**
@@ -255,7 +259,13 @@ public class Reflections {
 
     public static Class<?> getUserClass(Object instance) {
         Validate.notNull(instance, "Instance must not be null");
-        Class clazz = instance.getClass();
+        return getUserClass(instance.getClass());
+    }
+
+    /**
+     * 被CGLIB代理的类返回被代理的类，否则返回类本身.
+     */
+    public static Class<?> getUserClass(Class<?> clazz) {
         if ((clazz != null) && clazz.getName().contains(CGLIB_CLASS_SEPARATOR)) {
             Class<?> superClass = clazz.getSuperclass();
             if ((superClass != null) && !Object.class.equals(superClass)) {
@@ -263,7 +273,6 @@ public class Reflections {
             }
         }
         return clazz;
-
     }
 
     /**
@@ -2,6 +2,11 @@ package com.tmp.util;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -9,40 +14,125 @@ import java.util.regex.Pattern;
 
 /**
  * 正则表达式的工具类
+ * <p>
+ * 常用的正则表达式预先编译；整数、浮点数、手机号等简单格式逐字符判断，不使用正则、不分配对象.
+ * 其他正则表达式可通过{@link #getPattern(String)}取得编译后缓存的Pattern.
  *
  */
 public class RegExUtils {
 
+    // 缓存的Pattern的最大数量
+    private static final int MAX_PATTERNS = 256;
+
+    private static final LoadingCache<String, Pattern> PATTERNS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PATTERNS)
+            .build(CacheLoader.from(Pattern::compile));
+
+    public static final Pattern EMAIL = Pattern.compile("^[-+.\\w]+@\\w+([-.]\\w+)*\\.\\w+([-.]\\w+)*$");
+    public static final Pattern CHINESE = Pattern.compile("^[\u0391-\uFFE5]+$");
+    public static final Pattern IMG_URL = Pattern.compile("<img.*src=(.*?)[^>]*?>");
+    public static final Pattern IMG_SRC = Pattern.compile("http:\"?(.*?)(\"|>|\\s+)");
+
+    // 手机号的长度
+    private static final int MOBILE_LENGTH = 11;
+    // isSafe的最小长度
+    private static final int SAFE_MIN_LENGTH = 4;
+
+    /**
+     * 取得编译后的Pattern，相同的正则表达式只编译一次
+     *
+     * @param regex 正则表达式
+     * @return
+     */
+    public static Pattern getPattern(String regex) {
+
+        try {
+            return PATTERNS.getUnchecked(regex);
+        } catch (UncheckedExecutionException e) {
+            // 正则表达式语法错误时抛出原来的PatternSyntaxException
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 整个字符串是否与正则表达式匹配，与{@link String#matches(String)}相同，但Pattern是缓存的
+     *
+     * @param regex 正则表达式
+     * @param input 传入的字符串
+     * @return input为null时返回false
+     */
+    public static boolean matches(String regex, CharSequence input) {
+
+        return input != null && getPattern(regex).matcher(input).matches();
+    }
+
     /**
      * 功能描述：判断是否为整数
+     * <p>
+     * 等价于"^[+-]?\\d+$"
      *
      * @param str
      *            传入的字符串
      * @return 是整数返回true,否则返回false
      */
     public static boolean isInteger(String str) {
-        return str.matches("^[+-]?\\d+$");
+
+        if (str == null) {
+            return false;
+        }
+        int start = skipSign(str);
+        return start < str.length() && scanDigits(str, start) == str.length();
     }
 
     /**
      * 判断是否为浮点数，包括double和float
+     * <p>
+     * 等价于"^[+-]?\\d+(\\.\\d+$)?"，小数点前后都必须有数字
      *
      * @param str
      *            传入的字符串
      * @return 是浮点数返回true,否则返回false
      */
     public static boolean isDouble(String str) {
-        return str.matches("^[+-]?\\d+(\\.\\d+$)?");
+
+        if (str == null) {
+            return false;
+        }
+        int length = str.length();
+        int start = skipSign(str);
+        int end = scanDigits(str, start);
+        if (end == start) {
+            return false;
+        }
+        if (end == length) {
+            return true;
+        }
+        if (str.charAt(end) != '.') {
+            return false;
+        }
+        int fraction = end + 1;
+        return fraction < length && scanDigits(str, fraction) == length;
     }
 
     /**
      * 字母数字下划线,并以字母开头
+     * <p>
+     * 等价于"[\\w]{4,}"：至少4位，只能是字母、数字、下划线
      */
     public static boolean isSafe(String str) {
-        if (str == null || str.length() == 0) {
+        if (str == null || str.length() < SAFE_MIN_LENGTH) {
             return false;
         }
-        return str.matches("[\\w]{4,}");
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (!isDigit(c) && !(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && c != '_') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -56,7 +146,7 @@ public class RegExUtils {
         if (email == null || email.length() < 1 || email.length() > 256) {
             return false;
         }
-        return email.matches("^[-+.\\w]+@\\w+([-.]\\w+)*\\.\\w+([-.]\\w+)*$");
+        return EMAIL.matcher(email).matches();
     }
 
     /**
@@ -67,28 +157,32 @@ public class RegExUtils {
      * @return 如果是纯汉字返回true,否则返回false
      */
     public static boolean isChinese(String str) {
-        return str.matches("^[\u0391-\uFFE5]+$");
+        return str != null && CHINESE.matcher(str).matches();
     }
 
     /**
      * 功能描述：判断是不是合法的手机号码
+     * <p>
+     * 等价于"^1[\\d]{10}$"
      *
      * @param pn
      *            手机号
      * @return boolean
      */
     public static boolean isPhoneNumber(String pn) {
-        try {
-            return pn.matches("^1[\\d]{10}$");
 
-        } catch (RuntimeException e) {
-            return false;
-        }
+        return pn != null
+                && pn.length() == MOBILE_LENGTH
+                && pn.charAt(0) == '1'
+                && scanDigits(pn, 1) == MOBILE_LENGTH;
     }
 
     /**
      * 是否是手机号
-     * 
+     * <p>
+     * 原来的"^((1[0-9][0-9])|(15[^4,\\D])|(18[0,5-9]))\\d{8}$"中第一个分支已包含后两个，
+     * 即1开头的11位数字，与{@link #isPhoneNumber(String)}相同
+     *
      * @param mobiles
      * @return
      */
@@ -98,21 +192,18 @@ public class RegExUtils {
             return false;
         }
 
-        Pattern p = Pattern.compile("^((1[0-9][0-9])|(15[^4,\\D])|(18[0,5-9]))\\d{8}$");
-        Matcher m = p.matcher(mobiles);
-        return m.matches();
+        return isPhoneNumber(mobiles);
     }
 
     /***
      * 获取ImageUrl地址
-     * 
+     *
      * @param html
      * @return
      */
     public static List<String> getImgUrl(String html) {
 
-        String IMGURL_REG = "<img.*src=(.*?)[^>]*?>";
-        Matcher matcher = Pattern.compile(IMGURL_REG).matcher(html);
+        Matcher matcher = IMG_URL.matcher(html);
         List<String> listImgUrl = new ArrayList<String>();
         while (matcher.find()) {
             listImgUrl.add(matcher.group());
@@ -122,18 +213,18 @@ public class RegExUtils {
 
     /***
      * 获取ImageSrc地址
-     * 
+     *
      * @param listImgUrl
      * @return
      */
     public static List<String> getImageSrc(List<String> listImgUrl) {
 
-        String IMGSRC_REG = "http:\"?(.*?)(\"|>|\\s+)";
         List<String> listImgSrc = new ArrayList<String>();
+        Matcher matcher = IMG_SRC.matcher("");
         for (String image : listImgUrl) {
-            Matcher matcher = Pattern.compile(IMGSRC_REG).matcher(image);
+            matcher.reset(image);
             while (matcher.find()) {
-                listImgSrc.add(matcher.group().substring(0, matcher.group().length() - 1));
+                listImgSrc.add(image.substring(matcher.start(), matcher.end() - 1));
             }
         }
         return listImgSrc;
@@ -141,7 +232,7 @@ public class RegExUtils {
 
     /***
      * 获取ImageSrc地址
-     * 
+     *
      * @param html
      * @return
      */
@@ -149,4 +240,39 @@ public class RegExUtils {
 
         return getImageSrc(getImgUrl(html));
     }
+
+    // ====================
+
+    /**
+     * 跳过开头的正负号，返回下一个字符的位置
+     */
+    private static int skipSign(String str) {
+
+        if (!str.isEmpty()) {
+            char c = str.charAt(0);
+            if (c == '+' || c == '-') {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 从start开始连续的数字，返回第一个不是数字的位置
+     */
+    private static int scanDigits(String str, int start) {
+
+        int i = start;
+        while (i < str.length() && isDigit(str.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 与正则的\d一致，只包括ASCII数字
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
@@ -0,0 +1,52 @@
+package com.tmp.util;
+
+import java.security.MessageDigest;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * {@link EncryptionUtil#encryptionPassword}的散列：salt + 1024次SHA-1
+ * <p>
+ * 只用于校验已有的密码，登录成功后由{@link PasswordService}重新散列为默认算法.
+ * encoded为"hex(salt)$hex(hash)"；已有数据的salt单独保存，见{@link PasswordService#verify(String, String, String)}.
+ */
+public class Sha1PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "sha1";
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public String hash(String plainPassword) {
+
+        byte[] salt = EncryptionUtil.salt();
+        return EncodeUtil.encodeHex(salt) + '$' + EncryptionUtil.encryptionPassword(plainPassword, salt);
+    }
+
+    @Override
+    public boolean matches(String plainPassword, String encoded) {
+
+        String[] parts = StringUtils.split(encoded, '$');
+        if (parts.length != 2) {
+            return false;
+        }
+        try {
+            byte[] salt = EncodeUtil.decodeHex(parts[0].toUpperCase(Locale.ENGLISH));
+            byte[] expected = EncodeUtil.decodeHex(parts[1].toUpperCase(Locale.ENGLISH));
+            byte[] actual = EncodeUtil.decodeHex(EncryptionUtil.encryptionPassword(plainPassword, salt));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        // 参数固定，是否改用默认算法由PasswordService决定
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.tmp.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合并相同的并发调用(single-flight)
+ * <p>
+ * 同一个key同时只执行一次，执行期间相同key的调用等待同一个CompletableFuture，得到相同的结果或异常；
+ * 执行结束后立即移除，不缓存结果. 返回的对象被多个调用方共享，调用方不能修改.
+ *
+ * @param <K> key，需要正确实现equals、hashCode
+ * @param <V> 结果
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行调用；相同key正在执行时等待其结果
+     *
+     * @param key  调用的key
+     * @param call 调用
+     * @return
+     */
+    public V execute(K key, Supplier<V> call) {
+
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+
+        executed.increment();
+        try {
+            V value = call.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 实际执行的次数
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * 合并到正在执行的调用、没有实际执行的次数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 正在执行的调用数
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{executed=" + getExecuted() + ", coalesced=" + getCoalesced() + ", inFlight=" + getInFlight() + "}";
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 抛出执行方原来的异常
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
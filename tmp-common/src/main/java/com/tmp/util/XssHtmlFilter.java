@@ -1,22 +1,25 @@
 package com.tmp.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * XSS HTMLFilter这是一个采用Java实现的开源类库。用于分析用户提交的输入，消除潜在的跨站点脚本攻击(XSS)，恶意的HTML，或简单的HTML格式错误。
  * <p>
  * 示例代码：
  * String input = ...
- * String clean = new XssHtmlFilter().filter( input );
+ * String clean = XssHtmlFilter.getDefault().filter( input );
+ * <p>
+ * 白名单由不可变的{@link XssPolicy}描述，过滤器本身没有状态，是线程安全的，可以在线程间共享.
+ * 输入只扫描一遍：标签、文本、注释在同一个状态机中识别，补全/转义不成对的尖括号、校验标签和属性、
+ * 去掉空标签、校验实体、转义引号都在扫描的同时完成，结果写入一个StringBuilder.
+ * 大段的富文本可以用{@link #filter(Reader, Writer)}边读边写.
  * <p>
  * https://github.com/finn-no/xss-html-filter
  * <p>
@@ -28,21 +31,12 @@ import java.util.regex.Pattern;
  * This code is a Java port of the original work in PHP by Cal Hendersen.
  * http://code.iamcal.com/php/lib_filter/
  * <p>
- * The trickiest part of the translation was handling the differences in regex handling
- * between PHP and Java.  These resources were helpful in the process:
- * <p>
- * http://java.sun.com/j2se/1.4.2/docs/api/java/util/regex/Pattern.html
- * http://us2.php.net/manual/en/reference.pcre.pattern.modifiers.php
- * http://www.regular-expressions.info/modifiers.html
- * <p>
- * A note on naming conventions: instance variables are prefixed with a "v"; global
- * constants are in all caps.
- * <p>
- * Sample use:
- * String input = ...
- * String clean = new HTMLFilter().filter( input );
- * <p>
- * The class is not thread safe. Create a new instance if in doubt.
+ * The regex pipeline of the original port has been replaced by a single-pass tokenizer
+ * which produces the same whitelist output, with these deliberate differences:
+ * every comment is recognized (not only the first one), empty elements nested in other
+ * empty elements are removed regardless of tag order, double quotes inside attribute
+ * values are always encoded, and numeric entities which overflow an int are left as they are
+ * instead of throwing NumberFormatException.
  * <p>
  * If you find bugs or have suggestions on improvement (especially regarding
  * performance), please contact us.  The latest version of this
@@ -54,122 +48,19 @@ import java.util.regex.Pattern;
  */
 public final class XssHtmlFilter {
 
-    /**
-     * regex flag union representing /si modifiers in php
-     **/
-    private static final int REGEX_FLAGS_SI = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
-    private static final Pattern P_COMMENTS = Pattern.compile("<!--(.*?)-->", Pattern.DOTALL);
-    private static final Pattern P_COMMENT = Pattern.compile("^!--(.*)--$", REGEX_FLAGS_SI);
-    private static final Pattern P_TAGS = Pattern.compile("<(.*?)>", Pattern.DOTALL);
-    private static final Pattern P_END_TAG = Pattern.compile("^/([a-z0-9]+)", REGEX_FLAGS_SI);
-    private static final Pattern P_START_TAG = Pattern.compile("^([a-z0-9]+)(.*?)(/?)$", REGEX_FLAGS_SI);
-    private static final Pattern P_QUOTED_ATTRIBUTES = Pattern.compile("([a-z0-9]+)=([\"'])(.*?)\\2", REGEX_FLAGS_SI);
-    private static final Pattern P_UNQUOTED_ATTRIBUTES = Pattern.compile("([a-z0-9]+)(=)([^\"\\s']+)", REGEX_FLAGS_SI);
-    private static final Pattern P_PROTOCOL = Pattern.compile("^([^:]+):", REGEX_FLAGS_SI);
-    private static final Pattern P_ENTITY = Pattern.compile("&#(\\d+);?");
-    private static final Pattern P_ENTITY_UNICODE = Pattern.compile("&#x([0-9a-f]+);?");
-    private static final Pattern P_ENCODE = Pattern.compile("%([0-9a-f]{2});?");
-    private static final Pattern P_VALID_ENTITIES = Pattern.compile("&([^&;]*)(?=(;|&|$))");
-    private static final Pattern P_VALID_QUOTES = Pattern.compile("(>|^)([^<]+?)(<|$)", Pattern.DOTALL);
-    private static final Pattern P_END_ARROW = Pattern.compile("^>");
-    private static final Pattern P_BODY_TO_END = Pattern.compile("<([^>]*?)(?=<|$)");
-    private static final Pattern P_XML_CONTENT = Pattern.compile("(^|>)([^<]*?)(?=>)");
-    private static final Pattern P_STRAY_LEFT_ARROW = Pattern.compile("<([^>]*?)(?=<|$)");
-    private static final Pattern P_STRAY_RIGHT_ARROW = Pattern.compile("(^|>)([^<]*?)(?=>)");
-    private static final Pattern P_AMP = Pattern.compile("&");
-    private static final Pattern P_QUOTE = Pattern.compile("\"");
-    private static final Pattern P_LEFT_ARROW = Pattern.compile("<");
-    private static final Pattern P_RIGHT_ARROW = Pattern.compile(">");
-    private static final Pattern P_BOTH_ARROWS = Pattern.compile("<>");
-
-    // @xxx could grow large... maybe use sesat's ReferenceMap
-    private static final ConcurrentMap<String, Pattern> P_REMOVE_PAIR_BLANKS = new ConcurrentHashMap<String, Pattern>();
-    private static final ConcurrentMap<String, Pattern> P_REMOVE_SELF_BLANKS = new ConcurrentHashMap<String, Pattern>();
+    private static final XssHtmlFilter DEFAULT = new XssHtmlFilter(XssPolicy.DEFAULT);
 
-    /**
-     * set of allowed html elements, along with allowed attributes for each element
-     **/
-    private final Map<String, List<String>> vAllowed;
-    /**
-     * counts of open tags for each (allowable) html element
-     **/
-    private final Map<String, Integer> vTagCounts = new HashMap<String, Integer>();
+    // filter(Reader, Writer)时缓冲区超过该长度且没有可能被去掉的空标签时写出
+    private static final int FLUSH_SIZE = 8192;
 
-    /**
-     * html elements which must always be self-closing (e.g. "<img />")
-     **/
-    private final String[] vSelfClosingTags;
-    /**
-     * html elements which must always have separate opening and closing tags (e.g. "<b></b>")
-     **/
-    private final String[] vNeedClosingTags;
-    /**
-     * set of disallowed html elements
-     **/
-    private final String[] vDisallowed;
-    /**
-     * attributes which should be checked for valid protocols
-     **/
-    private final String[] vProtocolAtts;
-    /**
-     * allowed protocols
-     **/
-    private final String[] vAllowedProtocols;
-    /**
-     * tags which should be removed if they contain no content (e.g. "<b></b>" or "<b />")
-     **/
-    private final String[] vRemoveBlanks;
-    /**
-     * entities allowed within html markup
-     **/
-    private final String[] vAllowedEntities;
-    /**
-     * flag determining whether comments are allowed in input String.
-     */
-    private final boolean stripComment;
-    private final boolean encodeQuotes;
-    private boolean vDebug = false;
-    /**
-     * flag determining whether to try to make tags when presented with "unbalanced"
-     * angle brackets (e.g. "<b text </b>" becomes "<b> text </b>").  If set to false,
-     * unbalanced angle brackets will be html escaped.
-     */
-    private final boolean alwaysMakeTags;
+    private final XssPolicy policy;
+    private final boolean vDebug;
 
     /**
      * Default constructor.
      */
     public XssHtmlFilter() {
-        vAllowed = new HashMap<String, List<String>>();
-
-        final ArrayList<String> a_atts = new ArrayList<String>();
-        a_atts.add("href");
-        a_atts.add("target");
-        vAllowed.put("a", a_atts);
-
-        final ArrayList<String> img_atts = new ArrayList<String>();
-        img_atts.add("src");
-        img_atts.add("width");
-        img_atts.add("height");
-        img_atts.add("alt");
-        vAllowed.put("img", img_atts);
-
-        final ArrayList<String> no_atts = new ArrayList<String>();
-        vAllowed.put("b", no_atts);
-        vAllowed.put("strong", no_atts);
-        vAllowed.put("i", no_atts);
-        vAllowed.put("em", no_atts);
-
-        vSelfClosingTags = new String[]{"img"};
-        vNeedClosingTags = new String[]{"a", "b", "strong", "i", "em"};
-        vDisallowed = new String[]{};
-        vAllowedProtocols = new String[]{"http", "mailto", "https"}; // no ftp.
-        vProtocolAtts = new String[]{"src", "href"};
-        vRemoveBlanks = new String[]{"a", "b", "strong", "i", "em"};
-        vAllowedEntities = new String[]{"amp", "gt", "lt", "quot"};
-        stripComment = true;
-        encodeQuotes = true;
-        alwaysMakeTags = true;
+        this(XssPolicy.DEFAULT);
     }
 
     /**
@@ -178,42 +69,40 @@ public final class XssHtmlFilter {
      * @param debug turn debug on with a true argument
      */
     public XssHtmlFilter(final boolean debug) {
-        this();
-        vDebug = debug;
-
+        this(XssPolicy.DEFAULT, debug);
     }
 
     /**
      * Map-parameter configurable constructor.
      *
      * @param conf map containing configuration. keys match field names.
+     * @see XssPolicy#fromConfig(Map)
      */
     public XssHtmlFilter(final Map<String, Object> conf) {
+        this(XssPolicy.fromConfig(conf));
+    }
 
-        assert conf.containsKey("vAllowed") : "configuration requires vAllowed";
-        assert conf.containsKey("vSelfClosingTags") : "configuration requires vSelfClosingTags";
-        assert conf.containsKey("vNeedClosingTags") : "configuration requires vNeedClosingTags";
-        assert conf.containsKey("vDisallowed") : "configuration requires vDisallowed";
-        assert conf.containsKey("vAllowedProtocols") : "configuration requires vAllowedProtocols";
-        assert conf.containsKey("vProtocolAtts") : "configuration requires vProtocolAtts";
-        assert conf.containsKey("vRemoveBlanks") : "configuration requires vRemoveBlanks";
-        assert conf.containsKey("vAllowedEntities") : "configuration requires vAllowedEntities";
-
-        vAllowed = Collections.unmodifiableMap((HashMap<String, List<String>>) conf.get("vAllowed"));
-        vSelfClosingTags = (String[]) conf.get("vSelfClosingTags");
-        vNeedClosingTags = (String[]) conf.get("vNeedClosingTags");
-        vDisallowed = (String[]) conf.get("vDisallowed");
-        vAllowedProtocols = (String[]) conf.get("vAllowedProtocols");
-        vProtocolAtts = (String[]) conf.get("vProtocolAtts");
-        vRemoveBlanks = (String[]) conf.get("vRemoveBlanks");
-        vAllowedEntities = (String[]) conf.get("vAllowedEntities");
-        stripComment = conf.containsKey("stripComment") ? (Boolean) conf.get("stripComment") : true;
-        encodeQuotes = conf.containsKey("encodeQuotes") ? (Boolean) conf.get("encodeQuotes") : true;
-        alwaysMakeTags = conf.containsKey("alwaysMakeTags") ? (Boolean) conf.get("alwaysMakeTags") : true;
+    /**
+     * 按指定的白名单策略过滤
+     *
+     * @param policy 白名单策略
+     */
+    public XssHtmlFilter(final XssPolicy policy) {
+        this(policy, false);
+    }
+
+    private XssHtmlFilter(final XssPolicy policy, final boolean debug) {
+        this.policy = policy;
+        this.vDebug = debug;
     }
 
-    private void reset() {
-        vTagCounts.clear();
+    /**
+     * 使用默认策略的共享实例
+     *
+     * @return
+     */
+    public static XssHtmlFilter getDefault() {
+        return DEFAULT;
     }
 
     private void debug(final String msg) {
@@ -229,12 +118,9 @@ public final class XssHtmlFilter {
     }
 
     public static String htmlSpecialChars(final String s) {
-        String result = s;
-        result = regexReplace(P_AMP, "&amp;", result);
-        result = regexReplace(P_QUOTE, "&quot;", result);
-        result = regexReplace(P_LEFT_ARROW, "&lt;", result);
-        result = regexReplace(P_RIGHT_ARROW, "&gt;", result);
-        return result;
+        StringBuilder buf = new StringBuilder(s.length() + 16);
+        appendSpecialChars(buf, s, 0, s.length());
+        return buf.toString();
     }
 
     //---------------------------------------------------------------
@@ -247,321 +133,684 @@ public final class XssHtmlFilter {
      * @return "clean" version of input, with only valid, whitelisted html elements allowed
      */
     public String filter(final String input) {
-        reset();
-        String s = input;
 
-        debug("************************************************");
         debug("              INPUT: " + input);
 
-        s = escapeComments(s);
-        debug("     escapeComments: " + s);
+        // 没有尖括号、'&'、双引号时过滤结果与输入相同
+        if (!containsMarkup(input)) {
+            return input;
+        }
 
-        s = balanceHTML(s);
-        debug("        balanceHTML: " + s);
+        StringBuilder out = new StringBuilder(input.length() + 16);
+        try {
+            new Sanitizer(policy, new StringInput(input), out, null).run();
+        } catch (IOException e) {
+            // 字符串输入、StringBuilder输出不会发生
+            throw new UncheckedIOException(e);
+        }
+        String result = out.toString();
 
-        s = checkTags(s);
-        debug("          checkTags: " + s);
+        debug("             OUTPUT: " + result);
+        return result;
+    }
 
-        s = processRemoveBlanks(s);
-        debug("processRemoveBlanks: " + s);
+    /**
+     * 过滤Reader中的html，结果写入Writer，不需要把整个输入读入内存
+     * <p>
+     * 两个标签之间的文本、一个标签或注释需要完整读入后处理.
+     * Reader、Writer由调用者关闭.
+     *
+     * @param input  用户提交的内容
+     * @param output 过滤后的内容
+     * @throws IOException 读写失败
+     */
+    public void filter(final Reader input, final Writer output) throws IOException {
 
-        s = validateEntities(s);
-        debug("    validateEntites: " + s);
+        new Sanitizer(policy, new ReaderInput(input), new StringBuilder(FLUSH_SIZE * 2), output).run();
+    }
 
-        debug("************************************************\n\n");
-        return s;
+    /**
+     * 白名单策略
+     */
+    public XssPolicy getPolicy() {
+        return policy;
     }
 
     public boolean isAlwaysMakeTags() {
-        return alwaysMakeTags;
+        return policy.isAlwaysMakeTags();
     }
 
     public boolean isStripComments() {
-        return stripComment;
+        return policy.isStripComments();
     }
 
-    private String escapeComments(final String s) {
-        final Matcher m = P_COMMENTS.matcher(s);
-        final StringBuffer buf = new StringBuffer();
-        if (m.find()) {
-            final String match = m.group(1); //(.*?)
-            m.appendReplacement(buf, Matcher.quoteReplacement("<!--" + htmlSpecialChars(match) + "-->"));
+    // ====================
+
+    private static void appendSpecialChars(StringBuilder buf, CharSequence s, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    buf.append("&amp;");
+                    break;
+                case '"':
+                    buf.append("&quot;");
+                    break;
+                case '<':
+                    buf.append("&lt;");
+                    break;
+                case '>':
+                    buf.append("&gt;");
+                    break;
+                default:
+                    buf.append(c);
+            }
         }
-        m.appendTail(buf);
+    }
 
-        return buf.toString();
+    private static boolean containsMarkup(String s) {
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '<' || c == '>' || c == '&' || c == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
-    private String balanceHTML(String s) {
-        if (alwaysMakeTags) {
-            //
-            // try and form html
-            //
-            s = regexReplace(P_END_ARROW, "", s);
-            s = regexReplace(P_BODY_TO_END, "<$1>", s);
-            s = regexReplace(P_XML_CONTENT, "$1<$2", s);
-
-        } else {
-            //
-            // escape stray brackets
-            //
-            s = regexReplace(P_STRAY_LEFT_ARROW, "&lt;$1", s);
-            s = regexReplace(P_STRAY_RIGHT_ARROW, "$1$2&gt;<", s);
-
-            //
-            // the last regexp causes '<>' entities to appear
-            // (we need to do a lookahead assertion so that the last bracket can
-            // be used in the next pass of the regexp)
-            //
-            s = regexReplace(P_BOTH_ARROWS, "", s);
-        }
-
-        return s;
+    private static boolean isLowerHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
     }
 
-    private String checkTags(String s) {
-        Matcher m = P_TAGS.matcher(s);
+    /**
+     * [from, to)中从from开始连续的字母数字，返回第一个不是字母数字的位置
+     */
+    private static int alphanumericRun(CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && isAlphanumeric(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
 
-        final StringBuffer buf = new StringBuffer();
-        while (m.find()) {
-            String replaceStr = m.group(1);
-            replaceStr = processTag(replaceStr);
-            m.appendReplacement(buf, Matcher.quoteReplacement(replaceStr));
+    /**
+     * ASCII小写，与区域设置无关
+     */
+    private static String toLowerCase(CharSequence s, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            chars[i - from] = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
         }
-        m.appendTail(buf);
+        return new String(chars);
+    }
+
+    /**
+     * 依次解码"&amp;#ddd;"、"&amp;#xhh;"、"%hh"，与原来的decodeEntities一致
+     */
+    private static String decodeEntities(String s) {
+        return decodePercent(decodeHexEntities(decodeDecimalEntities(s)));
+    }
 
-        s = buf.toString();
+    private static String decodeDecimalEntities(String s) {
 
-        // these get tallied in processTag
-        // (remember to reset before subsequent calls to filter method)
-        for (String key : vTagCounts.keySet()) {
-            for (int ii = 0; ii < vTagCounts.get(key); ii++) {
-                s += "</" + key + ">";
+        int i = s.indexOf("&#");
+        if (i < 0) {
+            return s;
+        }
+        StringBuilder buf = new StringBuilder(s.length());
+        int last = 0;
+        for (; i >= 0; i = s.indexOf("&#", i)) {
+            int start = i + 2;
+            int end = start;
+            while (end < s.length() && s.charAt(end) >= '0' && s.charAt(end) <= '9') {
+                end++;
+            }
+            if (end == start) {
+                i = start;
+                continue;
             }
+            char decoded;
+            try {
+                // 与原来一致使用Integer.decode，以0开头时按八进制
+                decoded = (char) Integer.decode(s.substring(start, end)).intValue();
+            } catch (NumberFormatException e) {
+                i = end;
+                continue;
+            }
+            buf.append(s, last, i).append(decoded);
+            last = (end < s.length() && s.charAt(end) == ';') ? end + 1 : end;
+            i = last;
         }
-
-        return s;
+        return buf.append(s, last, s.length()).toString();
     }
 
-    private String processRemoveBlanks(final String s) {
-        String result = s;
-        for (String tag : vRemoveBlanks) {
-            if (!P_REMOVE_PAIR_BLANKS.containsKey(tag)) {
-                P_REMOVE_PAIR_BLANKS.putIfAbsent(tag, Pattern.compile("<" + tag + "(\\s[^>]*)?></" + tag + ">"));
+    private static String decodeHexEntities(String s) {
+
+        int i = s.indexOf("&#x");
+        if (i < 0) {
+            return s;
+        }
+        StringBuilder buf = new StringBuilder(s.length());
+        int last = 0;
+        for (; i >= 0; i = s.indexOf("&#x", i)) {
+            int start = i + 3;
+            int end = start;
+            while (end < s.length() && isLowerHex(s.charAt(end))) {
+                end++;
+            }
+            if (end == start) {
+                i = start;
+                continue;
             }
-            result = regexReplace(P_REMOVE_PAIR_BLANKS.get(tag), "", result);
-            if (!P_REMOVE_SELF_BLANKS.containsKey(tag)) {
-                P_REMOVE_SELF_BLANKS.putIfAbsent(tag, Pattern.compile("<" + tag + "(\\s[^>]*)?/>"));
+            char decoded;
+            try {
+                decoded = (char) Integer.parseInt(s.substring(start, end), 16);
+            } catch (NumberFormatException e) {
+                i = end;
+                continue;
             }
-            result = regexReplace(P_REMOVE_SELF_BLANKS.get(tag), "", result);
+            buf.append(s, last, i).append(decoded);
+            last = (end < s.length() && s.charAt(end) == ';') ? end + 1 : end;
+            i = last;
         }
+        return buf.append(s, last, s.length()).toString();
+    }
 
-        return result;
+    private static String decodePercent(String s) {
+
+        int i = s.indexOf('%');
+        if (i < 0) {
+            return s;
+        }
+        StringBuilder buf = new StringBuilder(s.length());
+        int last = 0;
+        for (; i >= 0; i = s.indexOf('%', i)) {
+            int end = i + 3;
+            if (end > s.length() || !isLowerHex(s.charAt(i + 1)) || !isLowerHex(s.charAt(i + 2))) {
+                i++;
+                continue;
+            }
+            buf.append(s, last, i).append((char) Integer.parseInt(s.substring(i + 1, end), 16));
+            last = (end < s.length() && s.charAt(end) == ';') ? end + 1 : end;
+            i = last;
+        }
+        return buf.append(s, last, s.length()).toString();
     }
 
-    private static String regexReplace(final Pattern regex_pattern, final String replacement, final String s) {
-        Matcher m = regex_pattern.matcher(s);
-        return m.replaceAll(replacement);
+    /**
+     * 输入的字符
+     */
+    private abstract static class Input {
+
+        /**
+         * @return 没有更多字符时返回-1
+         */
+        abstract int read() throws IOException;
+    }
+
+    private static final class StringInput extends Input {
+
+        private final String s;
+        private int pos;
+
+        StringInput(String s) {
+            this.s = s;
+        }
+
+        @Override
+        int read() {
+            return pos < s.length() ? s.charAt(pos++) : -1;
+        }
+    }
+
+    private static final class ReaderInput extends Input {
+
+        private final Reader reader;
+        private final char[] buf = new char[FLUSH_SIZE];
+        private int pos;
+        private int limit;
+
+        ReaderInput(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (pos >= limit) {
+                limit = reader.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
     }
 
-    private String processTag(final String s) {
-        // ending tags
-        Matcher m = P_END_TAG.matcher(s);
-        if (m.find()) {
-            final String name = m.group(1).toLowerCase();
-            if (allowed(name)) {
-                if (!inArray(name, vSelfClosingTags)) {
-                    if (vTagCounts.containsKey(name)) {
-                        vTagCounts.put(name, vTagCounts.get(name) - 1);
-                        return "</" + name + ">";
+    /**
+     * 一次过滤的状态，不在线程间共享
+     */
+    private static final class Sanitizer {
+
+        private final XssPolicy policy;
+        private final Input input;
+        private final StringBuilder out;
+        private final Writer writer;
+
+        // 当前的文本片段，遇到'<'、'>'或结束时处理
+        private final StringBuilder text = new StringBuilder();
+        // 当前标签'<'、'>'之间的内容
+        private final StringBuilder tag = new StringBuilder();
+        // 未结束的标签数量，结束时补全. 使用HashMap，补全的顺序与原来一致
+        private final Map<String, Integer> tagCounts = new HashMap<>();
+
+        // 输出末尾连续的、还没有内容的开始标签(属于removeBlanks)，遇到对应的结束标签时整个去掉
+        private int[] blankStarts = new int[8];
+        private int[] blankEnds = new int[8];
+        private String[] blankNames = new String[8];
+        private int blankDepth;
+
+        // 没有结束的注释被当作普通标签重新处理
+        private String pushback;
+        private int pushbackPos;
+        // 已读到结尾也没有"-->"，之后不会再有完整的注释
+        private boolean noMoreComments;
+
+        Sanitizer(XssPolicy policy, Input input, StringBuilder out, Writer writer) {
+            this.policy = policy;
+            this.input = input;
+            this.out = out;
+            this.writer = writer;
+        }
+
+        void run() throws IOException {
+
+            boolean first = true;
+            int c;
+            while ((c = next()) != -1) {
+                if (first) {
+                    first = false;
+                    // 去掉开头的'>'
+                    if (c == '>' && policy.isAlwaysMakeTags()) {
+                        continue;
+                    }
+                }
+
+                if (c == '<') {
+                    flushText();
+                    readTag();
+                } else if (c == '>') {
+                    if (policy.isAlwaysMakeTags()) {
+                        // 没有'<'的'>'，前面的文本补全为标签
+                        processTag(text);
+                        text.setLength(0);
+                    } else {
+                        flushText();
+                        out.append("&gt;");
+                        clearBlanks();
                     }
+                } else {
+                    text.append((char) c);
+                    continue;
+                }
+                flushIfNeeded();
+            }
+            flushText();
+
+            // 补全没有结束的标签
+            for (Map.Entry<String, Integer> entry : tagCounts.entrySet()) {
+                for (int i = 0; i < entry.getValue(); i++) {
+                    closeTag(entry.getKey());
                 }
             }
+
+            if (writer != null) {
+                writer.append(out);
+                out.setLength(0);
+            }
         }
 
-        // starting tags
-        m = P_START_TAG.matcher(s);
-        if (m.find()) {
-            final String name = m.group(1).toLowerCase();
-            final String body = m.group(2);
-            String ending = m.group(3);
+        private int next() throws IOException {
+            if (pushback != null) {
+                if (pushbackPos < pushback.length()) {
+                    return pushback.charAt(pushbackPos++);
+                }
+                pushback = null;
+            }
+            return input.read();
+        }
 
-            //debug( "in a starting tag, name='" + name + "'; body='" + body + "'; ending='" + ending + "'" );
-            if (allowed(name)) {
-                String params = "";
+        /**
+         * 读取'<'之后的标签
+         */
+        private void readTag() throws IOException {
+
+            tag.setLength(0);
+            int c;
+            while ((c = next()) != -1) {
+                if (c == '>') {
+                    processTag(tag);
+                    return;
+                }
+                if (c == '<') {
+                    // 没有'>'的'<'
+                    closeStrayTag();
+                    tag.setLength(0);
+                    continue;
+                }
 
-                final Matcher m2 = P_QUOTED_ATTRIBUTES.matcher(body);
-                final Matcher m3 = P_UNQUOTED_ATTRIBUTES.matcher(body);
-                final List<String> paramNames = new ArrayList<String>();
-                final List<String> paramValues = new ArrayList<String>();
-                while (m2.find()) {
-                    paramNames.add(m2.group(1)); //([a-z0-9]+)
-                    paramValues.add(m2.group(3)); //(.*?)
+                tag.append((char) c);
+                if (tag.length() == 3 && !noMoreComments && tag.charAt(0) == '!' && tag.charAt(1) == '-' && tag.charAt(2) == '-') {
+                    if (readComment()) {
+                        return;
+                    }
+                    // 没有结束的注释，已读入的内容按普通标签重新处理
+                    pushback = tag.toString();
+                    pushbackPos = 0;
+                    tag.setLength(0);
                 }
-                while (m3.find()) {
-                    paramNames.add(m3.group(1)); //([a-z0-9]+)
-                    paramValues.add(m3.group(3)); //([^\"\\s']+)
+            }
+            closeStrayTag();
+        }
+
+        /**
+         * 补全为标签或转义
+         */
+        private void closeStrayTag() {
+
+            if (policy.isAlwaysMakeTags()) {
+                processTag(tag);
+            } else {
+                out.append("&lt;");
+                appendText(tag, 0, tag.length());
+                clearBlanks();
+            }
+        }
+
+        /**
+         * 读取注释到"-->"为止，tag中已有"!--"
+         *
+         * @return 没有"-->"时返回false
+         */
+        private boolean readComment() throws IOException {
+
+            int c;
+            while ((c = next()) != -1) {
+                int length = tag.length();
+                if (c == '>' && length >= 5 && tag.charAt(length - 1) == '-' && tag.charAt(length - 2) == '-') {
+                    if (!policy.isStripComments()) {
+                        out.append("<!--");
+                        appendSpecialChars(out, tag, 3, length - 2);
+                        out.append("-->");
+                        clearBlanks();
+                    }
+                    return true;
                 }
+                tag.append((char) c);
+            }
+            noMoreComments = true;
+            return false;
+        }
+
+        private void flushText() {
 
-                String paramName, paramValue;
-                for (int ii = 0; ii < paramNames.size(); ii++) {
-                    paramName = paramNames.get(ii).toLowerCase();
-                    paramValue = paramValues.get(ii);
+            if (text.length() > 0) {
+                appendText(text, 0, text.length());
+                text.setLength(0);
+                clearBlanks();
+            }
+        }
 
-//          debug( "paramName='" + paramName + "'" );
-//          debug( "paramValue='" + paramValue + "'" );
-//          debug( "allowed? " + vAllowed.get( name ).contains( paramName ) );
+        private void flushIfNeeded() throws IOException {
 
-                    if (allowedAttribute(name, paramName)) {
-                        if (inArray(paramName, vProtocolAtts)) {
-                            paramValue = processParamProtocol(paramValue);
-                        }
-                        params += " " + paramName + "=\"" + paramValue + "\"";
+            if (writer != null && blankDepth == 0 && out.length() >= FLUSH_SIZE) {
+                writer.append(out);
+                out.setLength(0);
+            }
+        }
+
+        /**
+         * 处理一个标签，s为'<'、'>'之间的内容
+         */
+        private void processTag(CharSequence s) {
+
+            int length = s.length();
+
+            // ending tags
+            if (length > 0 && s.charAt(0) == '/') {
+                int nameEnd = alphanumericRun(s, 1, length);
+                if (nameEnd > 1) {
+                    String name = toLowerCase(s, 1, nameEnd);
+                    if (policy.isAllowed(name) && !policy.isSelfClosing(name) && tagCounts.containsKey(name)) {
+                        tagCounts.put(name, tagCounts.get(name) - 1);
+                        closeTag(name);
                     }
                 }
+                return;
+            }
 
-                if (inArray(name, vSelfClosingTags)) {
-                    ending = " /";
+            // starting tags
+            int nameEnd = alphanumericRun(s, 0, length);
+            if (nameEnd > 0) {
+                String name = toLowerCase(s, 0, nameEnd);
+                if (!policy.isAllowed(name)) {
+                    return;
                 }
 
-                if (inArray(name, vNeedClosingTags)) {
-                    ending = "";
+                boolean selfClosing = s.charAt(length - 1) == '/';
+                int start = out.length();
+                out.append('<').append(name);
+                appendAttributes(name, s, nameEnd, selfClosing ? length - 1 : length);
+
+                if (policy.isSelfClosing(name)) {
+                    selfClosing = true;
+                }
+                if (policy.isNeedClosing(name)) {
+                    selfClosing = false;
                 }
 
-                if (ending == null || ending.length() < 1) {
-                    if (vTagCounts.containsKey(name)) {
-                        vTagCounts.put(name, vTagCounts.get(name) + 1);
+                if (selfClosing) {
+                    if (policy.isRemoveBlank(name)) {
+                        out.setLength(start);
                     } else {
-                        vTagCounts.put(name, 1);
+                        out.append(" />");
+                        clearBlanks();
                     }
                 } else {
-                    ending = " /";
+                    tagCounts.merge(name, 1, Integer::sum);
+                    out.append('>');
+                    if (policy.isRemoveBlank(name)) {
+                        pushBlank(start, name);
+                    } else {
+                        clearBlanks();
+                    }
                 }
-                return "<" + name + params + ending + ">";
-            } else {
-                return "";
+                return;
             }
-        }
 
-        // comments
-        m = P_COMMENT.matcher(s);
-        if (!stripComment && m.find()) {
-            return "<" + m.group() + ">";
+            // comments，没有"-->"结束的注释
+            if (!policy.isStripComments() && length >= 5 && s.charAt(0) == '!' && s.charAt(1) == '-' && s.charAt(2) == '-'
+                    && s.charAt(length - 1) == '-' && s.charAt(length - 2) == '-') {
+                out.append('<');
+                appendValue(s, 0, length, false);
+                out.append('>');
+                clearBlanks();
+            }
         }
 
-        return "";
-    }
+        /**
+         * 先取带引号的属性，再取不带引号的属性，只保留白名单中的
+         */
+        private void appendAttributes(String name, CharSequence s, int from, int to) {
+
+            // ([a-z0-9]+)=(["'])(.*?)\2
+            int i = from;
+            while (i < to) {
+                if (!isAlphanumeric(s.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int nameEnd = alphanumericRun(s, i, to);
+                if (nameEnd + 1 < to && s.charAt(nameEnd) == '=' && (s.charAt(nameEnd + 1) == '"' || s.charAt(nameEnd + 1) == '\'')) {
+                    char quote = s.charAt(nameEnd + 1);
+                    int valueEnd = indexOf(s, quote, nameEnd + 2, to);
+                    if (valueEnd >= 0) {
+                        appendAttribute(name, s, i, nameEnd, nameEnd + 2, valueEnd);
+                        i = valueEnd + 1;
+                        continue;
+                    }
+                }
+                i = nameEnd;
+            }
 
-    private String processParamProtocol(String s) {
-        s = decodeEntities(s);
-        final Matcher m = P_PROTOCOL.matcher(s);
-        if (m.find()) {
-            final String protocol = m.group(1);
-            if (!inArray(protocol, vAllowedProtocols)) {
-                // bad protocol, turn into local anchor link instead
-                s = "#" + s.substring(protocol.length() + 1, s.length());
-                if (s.startsWith("#//")) {
-                    s = "#" + s.substring(3, s.length());
+            // ([a-z0-9]+)(=)([^"\s']+)
+            i = from;
+            while (i < to) {
+                if (!isAlphanumeric(s.charAt(i))) {
+                    i++;
+                    continue;
                 }
+                int nameEnd = alphanumericRun(s, i, to);
+                if (nameEnd + 1 < to && s.charAt(nameEnd) == '=' && isUnquotedValueChar(s.charAt(nameEnd + 1))) {
+                    int valueEnd = nameEnd + 1;
+                    while (valueEnd < to && isUnquotedValueChar(s.charAt(valueEnd))) {
+                        valueEnd++;
+                    }
+                    appendAttribute(name, s, i, nameEnd, nameEnd + 1, valueEnd);
+                    i = valueEnd;
+                    continue;
+                }
+                i = nameEnd;
             }
         }
 
-        return s;
-    }
+        private void appendAttribute(String name, CharSequence s, int nameStart, int nameEnd, int valueStart, int valueEnd) {
 
-    private String decodeEntities(String s) {
-        StringBuffer buf = new StringBuffer();
+            String attribute = toLowerCase(s, nameStart, nameEnd);
+            if (!policy.isAllowedAttribute(name, attribute)) {
+                return;
+            }
 
-        Matcher m = P_ENTITY.matcher(s);
-        while (m.find()) {
-            final String match = m.group(1);
-            final int decimal = Integer.decode(match).intValue();
-            m.appendReplacement(buf, Matcher.quoteReplacement(chr(decimal)));
+            out.append(' ').append(attribute).append("=\"");
+            if (policy.isProtocolAttribute(attribute)) {
+                String value = processParamProtocol(s.subSequence(valueStart, valueEnd).toString());
+                appendValue(value, 0, value.length(), true);
+            } else {
+                appendValue(s, valueStart, valueEnd, true);
+            }
+            out.append('"');
         }
-        m.appendTail(buf);
-        s = buf.toString();
 
-        buf = new StringBuffer();
-        m = P_ENTITY_UNICODE.matcher(s);
-        while (m.find()) {
-            final String match = m.group(1);
-            final int decimal = Integer.valueOf(match, 16).intValue();
-            m.appendReplacement(buf, Matcher.quoteReplacement(chr(decimal)));
+        private String processParamProtocol(String value) {
+
+            String s = decodeEntities(value);
+            int colon = s.indexOf(':');
+            if (colon > 0 && !policy.isAllowedProtocol(s.substring(0, colon))) {
+                // bad protocol, turn into local anchor link instead
+                s = "#" + s.substring(colon + 1);
+                if (s.startsWith("#//")) {
+                    s = "#" + s.substring(3);
+                }
+            }
+            return s;
         }
-        m.appendTail(buf);
-        s = buf.toString();
 
-        buf = new StringBuffer();
-        m = P_ENCODE.matcher(s);
-        while (m.find()) {
-            final String match = m.group(1);
-            final int decimal = Integer.valueOf(match, 16).intValue();
-            m.appendReplacement(buf, Matcher.quoteReplacement(chr(decimal)));
+        /**
+         * 标签之外的文本：校验实体，按策略转义双引号
+         */
+        private void appendText(CharSequence s, int from, int to) {
+            appendValue(s, from, to, policy.isEncodeQuotes());
         }
-        m.appendTail(buf);
-        s = buf.toString();
 
-        s = validateEntities(s);
-        return s;
-    }
+        /**
+         * 校验实体：'&amp;'之后不是允许的实体及';'时转义为"&amp;amp;"
+         */
+        private void appendValue(CharSequence s, int from, int to, boolean encodeQuotes) {
+
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c == '&') {
+                    out.append(isAllowedEntity(s, i + 1, to) ? "&" : "&amp;");
+                } else if (c == '"' && encodeQuotes) {
+                    out.append("&quot;");
+                } else {
+                    out.append(c);
+                }
+            }
+        }
 
-    private String validateEntities(final String s) {
-        StringBuffer buf = new StringBuffer();
+        /**
+         * 从start开始到下一个'&amp;'或';'之前是允许的实体，且以';'结束
+         */
+        private boolean isAllowedEntity(CharSequence s, int start, int to) {
 
-        // validate entities throughout the string
-        Matcher m = P_VALID_ENTITIES.matcher(s);
-        while (m.find()) {
-            final String one = m.group(1); //([^&;]*)
-            final String two = m.group(2); //(?=(;|&|$))
-            m.appendReplacement(buf, Matcher.quoteReplacement(checkEntity(one, two)));
+            int end = start;
+            while (end < to && s.charAt(end) != '&' && s.charAt(end) != ';') {
+                end++;
+            }
+            return end < to && s.charAt(end) == ';' && policy.isAllowedEntity(s, start, end);
         }
-        m.appendTail(buf);
 
-        return encodeQuotes(buf.toString());
-    }
+        private void closeTag(String name) {
 
-    private String encodeQuotes(final String s) {
-        if (encodeQuotes) {
-            StringBuffer buf = new StringBuffer();
-            Matcher m = P_VALID_QUOTES.matcher(s);
-            while (m.find()) {
-                final String one = m.group(1); //(>|^)
-                final String two = m.group(2); //([^<]+?)
-                final String three = m.group(3); //(<|$)
-                m.appendReplacement(buf, Matcher.quoteReplacement(one + regexReplace(P_QUOTE, "&quot;", two) + three));
-            }
-            m.appendTail(buf);
-            return buf.toString();
-        } else {
-            return s;
+            int top = blankDepth - 1;
+            if (top >= 0 && blankEnds[top] == out.length() && blankNames[top].equals(name)) {
+                // 空标签，去掉开始标签
+                out.setLength(blankStarts[top]);
+                blankNames[top] = null;
+                blankDepth--;
+                return;
+            }
+            out.append("</").append(name).append('>');
+            clearBlanks();
         }
-    }
 
-    private String checkEntity(final String preamble, final String term) {
+        private void pushBlank(int start, String name) {
 
-        return ";".equals(term) && isValidEntity(preamble)
-                ? '&' + preamble
-                : "&amp;" + preamble;
-    }
+            if (blankDepth == blankStarts.length) {
+                int capacity = blankDepth * 2;
+                blankStarts = Arrays.copyOf(blankStarts, capacity);
+                blankEnds = Arrays.copyOf(blankEnds, capacity);
+                blankNames = Arrays.copyOf(blankNames, capacity);
+            }
+            blankStarts[blankDepth] = start;
+            blankEnds[blankDepth] = out.length();
+            blankNames[blankDepth] = name;
+            blankDepth++;
+        }
 
-    private boolean isValidEntity(final String entity) {
-        return inArray(entity, vAllowedEntities);
-    }
+        /**
+         * 输出了内容，之前的开始标签都不再是空标签
+         */
+        private void clearBlanks() {
 
-    private static boolean inArray(final String s, final String[] array) {
-        for (String item : array) {
-            if (item != null && item.equals(s)) {
-                return true;
-            }
+            Arrays.fill(blankNames, 0, blankDepth, null);
+            blankDepth = 0;
         }
-        return false;
-    }
 
-    private boolean allowed(final String name) {
-        return (vAllowed.isEmpty() || vAllowed.containsKey(name)) && !inArray(name, vDisallowed);
-    }
+        private static int indexOf(CharSequence s, char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (s.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
 
-    private boolean allowedAttribute(final String name, final String paramName) {
-        return allowed(name) && (vAllowed.isEmpty() || vAllowed.get(name).contains(paramName));
+        private static boolean isUnquotedValueChar(char c) {
+            return c != '"' && c != '\'' && !isWhitespace(c);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+package com.tmp.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * XssHtmlFilter的白名单策略
+ * <p>
+ * 创建后不可变，可以在线程间共享，一个应用通常只需要一个实例.
+ * 默认策略见{@link #DEFAULT}：允许a(href, target)、img(src, width, height, alt)、b、strong、i、em，
+ * href、src只允许http、https、mailto协议，去掉注释.
+ *
+ * @see XssHtmlFilter
+ */
+public final class XssPolicy {
+
+    /**
+     * 默认策略，与XssHtmlFilter原来的默认构造函数一致
+     */
+    public static final XssPolicy DEFAULT = builder()
+            .allow("a", "href", "target")
+            .allow("img", "src", "width", "height", "alt")
+            .allow("b")
+            .allow("strong")
+            .allow("i")
+            .allow("em")
+            .selfClosingTags("img")
+            .needClosingTags("a", "b", "strong", "i", "em")
+            .allowedProtocols("http", "mailto", "https")
+            .protocolAttributes("src", "href")
+            .removeBlanks("a", "b", "strong", "i", "em")
+            .allowedEntities("amp", "gt", "lt", "quot")
+            .build();
+
+    /**
+     * 允许的标签及每个标签允许的属性；为空时允许所有标签、属性
+     */
+    private final Map<String, Set<String>> allowed;
+    /**
+     * 必须自闭合的标签，如"&lt;img /&gt;"
+     */
+    private final Set<String> selfClosingTags;
+    /**
+     * 必须有结束标签的标签，如"&lt;b&gt;&lt;/b&gt;"
+     */
+    private final Set<String> needClosingTags;
+    /**
+     * 禁止的标签
+     */
+    private final Set<String> disallowed;
+    /**
+     * 需要检查协议的属性
+     */
+    private final Set<String> protocolAttributes;
+    /**
+     * 允许的协议
+     */
+    private final Set<String> allowedProtocols;
+    /**
+     * 没有内容时去掉的标签，如"&lt;b&gt;&lt;/b&gt;"、"&lt;b /&gt;"
+     */
+    private final Set<String> removeBlanks;
+    /**
+     * 允许的实体，其他的'&amp;'转义为"&amp;amp;"
+     */
+    private final Set<String> allowedEntities;
+    private final boolean stripComments;
+    private final boolean encodeQuotes;
+    /**
+     * 不成对的尖括号是否补全为标签(如"&lt;b text &lt;/b&gt;"变为"&lt;b text&gt;&lt;/b&gt;")，否则转义
+     */
+    private final boolean alwaysMakeTags;
+
+    private XssPolicy(Builder builder) {
+        Map<String, Set<String>> allowed = new HashMap<>();
+        builder.allowed.forEach((tag, attributes) -> allowed.put(tag, Collections.unmodifiableSet(new HashSet<>(attributes))));
+        this.allowed = Collections.unmodifiableMap(allowed);
+        this.selfClosingTags = copyOf(builder.selfClosingTags);
+        this.needClosingTags = copyOf(builder.needClosingTags);
+        this.disallowed = copyOf(builder.disallowed);
+        this.protocolAttributes = copyOf(builder.protocolAttributes);
+        this.allowedProtocols = copyOf(builder.allowedProtocols);
+        this.removeBlanks = copyOf(builder.removeBlanks);
+        this.allowedEntities = copyOf(builder.allowedEntities);
+        this.stripComments = builder.stripComments;
+        this.encodeQuotes = builder.encodeQuotes;
+        this.alwaysMakeTags = builder.alwaysMakeTags;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 从XssHtmlFilter原来的Map配置创建，key与原来的字段名一致：
+     * vAllowed、vSelfClosingTags、vNeedClosingTags、vDisallowed、vAllowedProtocols、vProtocolAtts、
+     * vRemoveBlanks、vAllowedEntities，可选stripComment、encodeQuotes、alwaysMakeTags
+     *
+     * @param conf 配置
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static XssPolicy fromConfig(Map<String, Object> conf) {
+
+        Validate.isTrue(conf.containsKey("vAllowed"), "configuration requires vAllowed");
+        Builder builder = builder();
+        ((Map<String, List<String>>) conf.get("vAllowed")).forEach(
+                (tag, attributes) -> builder.allow(tag, attributes.toArray(new String[0])));
+        return builder
+                .selfClosingTags(array(conf, "vSelfClosingTags"))
+                .needClosingTags(array(conf, "vNeedClosingTags"))
+                .disallowed(array(conf, "vDisallowed"))
+                .allowedProtocols(array(conf, "vAllowedProtocols"))
+                .protocolAttributes(array(conf, "vProtocolAtts"))
+                .removeBlanks(array(conf, "vRemoveBlanks"))
+                .allowedEntities(array(conf, "vAllowedEntities"))
+                .stripComments(conf.containsKey("stripComment") ? (Boolean) conf.get("stripComment") : true)
+                .encodeQuotes(conf.containsKey("encodeQuotes") ? (Boolean) conf.get("encodeQuotes") : true)
+                .alwaysMakeTags(conf.containsKey("alwaysMakeTags") ? (Boolean) conf.get("alwaysMakeTags") : true)
+                .build();
+    }
+
+    /**
+     * 是否允许该标签
+     */
+    public boolean isAllowed(String tag) {
+        return (allowed.isEmpty() || allowed.containsKey(tag)) && !disallowed.contains(tag);
+    }
+
+    /**
+     * 是否允许该标签的该属性
+     */
+    public boolean isAllowedAttribute(String tag, String attribute) {
+        return isAllowed(tag) && (allowed.isEmpty() || allowed.get(tag).contains(attribute));
+    }
+
+    public boolean isSelfClosing(String tag) {
+        return selfClosingTags.contains(tag);
+    }
+
+    public boolean isNeedClosing(String tag) {
+        return needClosingTags.contains(tag);
+    }
+
+    public boolean isProtocolAttribute(String attribute) {
+        return protocolAttributes.contains(attribute);
+    }
+
+    public boolean isAllowedProtocol(String protocol) {
+        return allowedProtocols.contains(protocol);
+    }
+
+    public boolean isRemoveBlank(String tag) {
+        return removeBlanks.contains(tag);
+    }
+
+    public boolean isAllowedEntity(String entity) {
+        return allowedEntities.contains(entity);
+    }
+
+    /**
+     * text中[start, end)是否为允许的实体名，不创建子串
+     */
+    boolean isAllowedEntity(CharSequence text, int start, int end) {
+
+        for (String entity : allowedEntities) {
+            if (entity.length() == end - start && regionMatches(text, start, entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isStripComments() {
+        return stripComments;
+    }
+
+    public boolean isEncodeQuotes() {
+        return encodeQuotes;
+    }
+
+    public boolean isAlwaysMakeTags() {
+        return alwaysMakeTags;
+    }
+
+    // ====================
+
+    private static Set<String> copyOf(Collection<String> values) {
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] array(Map<String, Object> conf, String key) {
+        Validate.isTrue(conf.containsKey(key), "configuration requires %s", key);
+        return (String[]) conf.get(key);
+    }
+
+    /**
+     * 策略的构建器，未设置的项为空或默认值(去掉注释、转义引号、补全标签)
+     */
+    public static final class Builder {
+
+        private final Map<String, Set<String>> allowed = new HashMap<>();
+        private final Set<String> selfClosingTags = new HashSet<>();
+        private final Set<String> needClosingTags = new HashSet<>();
+        private final Set<String> disallowed = new HashSet<>();
+        private final Set<String> protocolAttributes = new HashSet<>();
+        private final Set<String> allowedProtocols = new HashSet<>();
+        private final Set<String> removeBlanks = new HashSet<>();
+        private final Set<String> allowedEntities = new HashSet<>();
+        private boolean stripComments = true;
+        private boolean encodeQuotes = true;
+        private boolean alwaysMakeTags = true;
+
+        private Builder() {
+        }
+
+        /**
+         * 允许标签及其属性
+         */
+        public Builder allow(String tag, String... attributes) {
+            allowed.computeIfAbsent(tag, key -> new HashSet<>()).addAll(Arrays.asList(attributes));
+            return this;
+        }
+
+        public Builder selfClosingTags(String... tags) {
+            selfClosingTags.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder needClosingTags(String... tags) {
+            needClosingTags.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder disallowed(String... tags) {
+            disallowed.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder protocolAttributes(String... attributes) {
+            protocolAttributes.addAll(Arrays.asList(attributes));
+            return this;
+        }
+
+        public Builder allowedProtocols(String... protocols) {
+            allowedProtocols.addAll(Arrays.asList(protocols));
+            return this;
+        }
+
+        public Builder removeBlanks(String... tags) {
+            removeBlanks.addAll(Arrays.asList(tags));
+            return this;
+        }
+
+        public Builder allowedEntities(String... entities) {
+            allowedEntities.addAll(Arrays.asList(entities));
+            return this;
+        }
+
+        public Builder stripComments(boolean stripComments) {
+            this.stripComments = stripComments;
+            return this;
+        }
+
+        public Builder encodeQuotes(boolean encodeQuotes) {
+            this.encodeQuotes = encodeQuotes;
+            return this;
+        }
+
+        public Builder alwaysMakeTags(boolean alwaysMakeTags) {
+            this.alwaysMakeTags = alwaysMakeTags;
+            return this;
+        }
+
+        public XssPolicy build() {
+            return new XssPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.tmp.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * XssHtmlFilter：常见的XSS向量、与改写前实现({@link LegacyXssHtmlFilter})有意不同的行为，以及随机输入的对比
+ */
+public class XssHtmlFilterTest {
+
+    private final XssHtmlFilter filter = XssHtmlFilter.getDefault();
+
+    // ==================== 常见向量
+
+    @Test
+    public void javascriptProtocolInHref() {
+        assertEquals("<a href=\"#alert(1)\">x</a>", filter.filter("<a href=\"javascript:alert(1)\">x</a>"));
+        assertEquals("<a href=\"#alert(1)\">x</a>", filter.filter("<a href=\"&#106;avascript:alert(1)\">x</a>"));
+        assertEquals("<a href=\"#alert(1)\">x</a>", filter.filter("<a href=\"&#x6a;avascript:alert(1)\">x</a>"));
+        assertEquals("<a href=\"#alert(1)\">x</a>", filter.filter("<a href=\"%6aavascript:alert(1)\">x</a>"));
+        assertEquals("<img src=\"#alert(1)\" />", filter.filter("<IMG SRC=javascript:alert(1)>"));
+        assertEquals("<a href=\"http://ok.com/\">x</a>", filter.filter("<a href=\"http://ok.com/\">x</a>"));
+    }
+
+    @Test
+    public void disallowedTagsAndAttributes() {
+        assertEquals("alert(1)", filter.filter("<script>alert(1)</script>"));
+        assertEquals("<img src=\"x\" />", filter.filter("<img src=\"x\" onerror=\"alert(1)\"/>"));
+        assertEquals("<a href=\"x\" target=\"_blank\">t</a>", filter.filter("<a href=\"x\" target=\"_blank\">t</a>"));
+    }
+
+    @Test
+    public void unclosedTags() {
+        assertEquals("<b>bold</b>", filter.filter("<b>bold"));
+        assertEquals("<b><i>x</b></i>", filter.filter("<b><i>x"));
+        assertEquals("", filter.filter("<b text </b>"));
+        assertEquals("&lt;b text ", new XssHtmlFilter(config(false, true)).filter("<b text </b>"));
+    }
+
+    @Test
+    public void strayAngleBracketsWithAlwaysMakeTags() {
+        assertEquals("a ", filter.filter("a < b"));
+        assertEquals("<a> b</a>", filter.filter("a > b"));
+    }
+
+    @Test
+    public void strayAngleBracketsWithoutAlwaysMakeTags() {
+        XssHtmlFilter noMakeTags = new XssHtmlFilter(config(false, true));
+        assertEquals("a &lt; b", noMakeTags.filter("a < b"));
+        assertEquals("a &gt; b", noMakeTags.filter("a > b"));
+    }
+
+    @Test
+    public void comments() {
+        assertEquals("x  y  z", filter.filter("x <!-- c --> y <!-- d --> z"));
+        assertEquals("x <!-- c --> y", new XssHtmlFilter(config(true, false)).filter("x <!-- c --> y"));
+    }
+
+    @Test
+    public void blankTags() {
+        assertEquals("", filter.filter("<b></b>"));
+        assertEquals("", filter.filter("<i><b></b></i>"));
+        assertEquals("<b> </b>", filter.filter("<b> </b>"));
+    }
+
+    @Test
+    public void entitiesAndQuotes() {
+        assertEquals("a&amp;b &amp; &amp;foo;", filter.filter("a&b &amp; &foo;"));
+        assertEquals("&amp;#99999999999;", filter.filter("&#99999999999;"));
+        assertEquals("<a href=\"x&quot;y\">t</a>", filter.filter("<a href='x\"y'>t</a>"));
+    }
+
+    @Test
+    public void readerAndWriter() throws Exception {
+        String input = "<a href=\"javascript:alert(1)\">x</a><b>bold";
+        StringWriter out = new StringWriter();
+        filter.filter(new StringReader(input), out);
+        assertEquals(filter.filter(input), out.toString());
+    }
+
+    // ==================== 与改写前实现有意不同的行为
+
+    @Test
+    public void everyCommentIsProcessed() {
+        // 改写前只处理第一个注释，之后的整个被删除："x <!-- c --> y  z"
+        assertEquals("x <!-- c --> y <!-- &lt;d&gt; --> z",
+                new XssHtmlFilter(config(true, false)).filter("x <!-- c --> y <!-- <d> --> z"));
+    }
+
+    @Test
+    public void nestedBlankTagsAreRemoved() {
+        // 改写前只删除最内层的空标签："<b></b>"
+        assertEquals("", filter.filter("<b><i></i></b>"));
+        assertEquals("", filter.filter("<b><i><b></b></i></b>"));
+    }
+
+    @Test
+    public void quotesInAttributeValuesAreEncoded() {
+        // 改写前单引号中的双引号原样输出：<a title="a"b" href="http://x">t</a>
+        assertEquals("<a title=\"a&quot;b\" href=\"http://x\">t</a>",
+                new XssHtmlFilter(config(true, true)).filter("<a title='a\"b' href='http://x'>t</a>"));
+    }
+
+    @Test
+    public void leadingGreaterThans() {
+        // 改写前开头的">>"只处理一个：分别为"> x"、" > x"、"&gt;>&gt; x"、"a> x"
+        assertEquals(" x", filter.filter(">>> x"));
+        assertEquals(" x", filter.filter(">> > x"));
+        assertEquals("&gt;&gt;&gt; x", new XssHtmlFilter(config(false, true)).filter(">>> x"));
+        assertEquals("<a> x</a>", filter.filter(">>a> x"));
+    }
+
+    @Test
+    public void overflowingNumericEntities() {
+        // 改写前属性值中超出int范围的数字实体抛出NumberFormatException
+        assertEquals("<a href=\"&amp;#99999999999;x\">t</a>", filter.filter("<a href=\"&#99999999999;x\">t</a>"));
+        assertEquals("<a href=\"&amp;#x7fffffffff;x\">t</a>", filter.filter("<a href=\"&#x7fffffffff;x\">t</a>"));
+    }
+
+    // ==================== 与改写前实现对比
+
+    /**
+     * 由片段随机拼接的输入，与改写前的输出一致；不包含上面有意不同的情况(单独的引号、开头的">>"、超出范围的数字实体)，
+     * 改写前的输出中有空标签时(嵌套的空标签)跳过
+     */
+    @Test
+    public void sameAsLegacyOnRandomInput() {
+
+        String[] fragments = {"<b>t", "</b>", "<i>u", "</i>", "<em>e", "</em>", "<B>T", "<br>", "</a>",
+                "<a href=\"http://x.com/?a=1&b=2\">l", "<a href=\"javascript:alert(1)\">j", "<a href='&#106;avascript:x'>k",
+                "<a target=_blank href=http://y>m", "<img src=\"%6aavascript:x\" alt='p'/>", "<img src=http://i/p.png>",
+                "<script>s", "</script>", " ", "text", "&amp;", "&lt;", "&#60;", "&foo;", "&", "<", ">", "<!-- c -->"};
+        Pattern blankTag = Pattern.compile("<(\\w+)[^>]*></\\1>");
+
+        Random random = new Random(20181018L);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder input = new StringBuilder("s");
+            for (int i = random.nextInt(12); i >= 0; i--) {
+                input.append(fragments[random.nextInt(fragments.length)]);
+            }
+            String legacy = new LegacyXssHtmlFilter().filter(input.toString());
+            if (!blankTag.matcher(legacy).find()) {
+                assertEquals(input.toString(), legacy, filter.filter(input.toString()));
+            }
+        }
+    }
+
+    /**
+     * 只允许b、i、a(href、title)，a只允许http
+     */
+    private static Map<String, Object> config(boolean alwaysMakeTags, boolean stripComment) {
+
+        Map<String, List<String>> allowed = new HashMap<>();
+        allowed.put("b", Collections.emptyList());
+        allowed.put("i", Collections.emptyList());
+        allowed.put("a", Arrays.asList("href", "title"));
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("vAllowed", allowed);
+        conf.put("vSelfClosingTags", new String[0]);
+        conf.put("vNeedClosingTags", new String[]{"a", "b", "i"});
+        conf.put("vDisallowed", new String[0]);
+        conf.put("vAllowedProtocols", new String[]{"http"});
+        conf.put("vProtocolAtts", new String[]{"href"});
+        conf.put("vRemoveBlanks", new String[]{"a", "b", "i"});
+        conf.put("vAllowedEntities", new String[]{"amp", "lt", "gt", "quot"});
+        conf.put("alwaysMakeTags", alwaysMakeTags);
+        conf.put("stripComment", stripComment);
+        return conf;
+    }
+}
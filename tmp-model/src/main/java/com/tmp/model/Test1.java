@@ -1,12 +1,16 @@
 package com.tmp.model;
 
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import com.tmp.jpa.domain.JpaEntity;
+import com.tmp.jpa.domain.TimeOrderedIdGenerator;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -22,7 +26,10 @@ import lombok.NoArgsConstructor;
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "aa", scope = Test1.class)
 public class Test1  extends JpaEntity<String> {
 
+	// 新增时由TimeOrderedIdGenerator生成按时间递增的主键
 	@Id
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+	@GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = TimeOrderedIdGenerator.STRATEGY)
 	private String aa;
 	private String bb;
 	private String cc;
@@ -3,9 +3,11 @@ package com.tmp.repository;
 import org.springframework.stereotype.Repository;
 
 import com.tmp.jpa.repository.CustomJpaRepository;
+import com.tmp.jpa.repository.EntityCache;
 import com.tmp.model.Test1;
 
 @Repository
+@EntityCache(maxSize = 10000, ttlSeconds = 300)
 public interface Test1Repository extends CustomJpaRepository<Test1, String>  {
 
 }
@@ -33,6 +33,14 @@ public class Test1Service extends SimpleGeneralService<Test1, String> implements
 		return SpecificationUtil.buildSpecification(Test1.class, searchParams, linkType);
 	}
 	
+	/**
+	 * 列表页访问量大，合并相同的并发分页查询
+	 */
+	@Override
+	protected boolean isSingleFlight() {
+		return true;
+	}
+
 	public Page<Test1> test(Map<String,Object> searchParams,Pageable pageable) {
 		Page<Test1> page = this.findPage(searchParams, pageable);
 		return page;
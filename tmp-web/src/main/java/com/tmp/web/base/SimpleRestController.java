@@ -1,10 +1,34 @@
 package com.tmp.web.base;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.tmp.jpa.data.DataVersion;
 import com.tmp.jpa.data.Servlets;
+import com.tmp.util.InstrumentedExecutor;
 
 /**
  *  * 功能说明：restful api controller 的基类，
@@ -12,6 +36,19 @@ import com.tmp.jpa.data.Servlets;
  */
 public abstract class SimpleRestController {
 
+    /**
+     * 执行查询的有界线程池，见AsyncConfig
+     */
+    @Autowired
+    @Qualifier("queryExecutor")
+    private InstrumentedExecutor queryExecutor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${tmp.async.timeout:30000}")
+    private long asyncTimeout;
+
     /**
      * 从请求中获取查询条件
      * <p>
@@ -29,4 +66,129 @@ public abstract class SimpleRestController {
         return searchParams;
     }
 
+    /**
+     * 条件GET：查询结果没有变化时设置304，调用方不再查询、序列化
+     * <p>
+     * 弱ETag由请求的查询签名(路径 + 按名称排序的所有参数，包括查询条件、分页、排序)与数据的版本(条数、最大的最后修改时间)生成.
+     * 不设置Last-Modified：删除数据不会改变最大的最后修改时间，只靠If-Modified-Since会误判为没有变化.
+     * </p>
+     * <pre>
+     * if (checkNotModified(request, response, service.findDataVersion(searchParams))) {
+     *     return null;
+     * }
+     * </pre>
+     *
+     * @param version 满足查询条件的数据的版本
+     * @return 没有变化(已设置304)时返回true
+     */
+    protected boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, DataVersion version) {
+
+        String etag = "W/\"" + querySignature(request) + "-" + Long.toHexString(version.getCount())
+                + "-" + Long.toHexString(version.getLastModifiedMillis()) + "\"";
+
+        // 每次都向服务端验证
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (!Servlets.checkIfNoneMatchEtag(request, response, etag)) {
+            return true;
+        }
+        Servlets.setEtag(response, etag);
+        return false;
+    }
+
+    /**
+     * 在queryExecutor中执行，使用默认超时(tmp.async.timeout)
+     *
+     * @see #async(long, Supplier)
+     */
+    protected <R> DeferredResult<R> async(Supplier<R> call) {
+
+        return async(asyncTimeout, call);
+    }
+
+    /**
+     * 在queryExecutor中执行，不占用请求线程
+     * <p>
+     * 请求参数需要在调用前(请求线程中)取得. 线程池队列满时返回503；超时时中断执行线程并返回503.
+     * </p>
+     * <p>
+     * 中断线程不能停止数据库中执行的查询，因此调用在只读事务中执行，事务超时为开始执行时剩余的时间(向上取整到秒)：
+     * 其中的查询都设置了超时(javax.persistence.query.timeout)，超时后由数据库终止. 在队列中等待已超时的调用不再执行.
+     * 只用于查询：加入只读事务的修改不会flush.
+     * </p>
+     * <pre>
+     * Map&lt;String, Object&gt; searchParams = getSearchParams(request);
+     * return async(10000, () -&gt; service.findPage(searchParams, pageable));
+     * </pre>
+     *
+     * @param timeoutMillis 超时，单位毫秒
+     * @param call          在线程池中执行的调用
+     * @return
+     */
+    protected <R> DeferredResult<R> async(long timeoutMillis, Supplier<R> call) {
+
+        DeferredResult<R> result = new DeferredResult<>(timeoutMillis);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Future<?> future;
+        try {
+            future = queryExecutor.submit(() -> {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return;
+                }
+                TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+                transaction.setReadOnly(true);
+                transaction.setTimeout((int) ((remainingMillis + 999) / 1000));
+                try {
+                    result.setResult(transaction.execute(status -> call.get()));
+                } catch (RuntimeException | Error e) {
+                    result.setErrorResult(e);
+                    // 由Future记录，计入线程池的失败数
+                    throw e;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后再试", e));
+            return result;
+        }
+
+        result.onTimeout(() -> {
+            future.cancel(true);
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "请求超时"));
+        });
+        return result;
+    }
+
+    /**
+     * 在queryExecutor中执行，返回CompletableFuture，超时为Spring MVC的默认超时(tmp.async.timeout)
+     * <p>
+     * 线程池队列满时CompletableFuture以RejectedExecutionException结束.
+     * </p>
+     *
+     * @param call 在线程池中执行的调用
+     * @return
+     */
+    protected <R> CompletableFuture<R> supplyAsync(Supplier<R> call) {
+
+        return queryExecutor.supplyAsync(call);
+    }
+
+    /**
+     * 线程池队列满(queryExecutor、passwordExecutor等)时返回503；返回的CompletableFuture以RejectedExecutionException结束时同样处理
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "服务繁忙，请稍后再试")
+    public void handleRejectedExecution(RejectedExecutionException e) {
+    }
+
+    /**
+     * 请求的查询签名：路径 + 按名称排序的参数的哈希
+     */
+    private static String querySignature(HttpServletRequest request) {
+
+        StringBuilder signature = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach(
+                (name, values) -> signature.append('&').append(name).append('=').append(Arrays.toString(values)));
+        return Hashing.murmur3_128().hashString(signature, Charsets.UTF_8).toString();
+    }
+
 }
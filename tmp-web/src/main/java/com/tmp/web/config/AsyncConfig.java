@@ -0,0 +1,73 @@
+package com.tmp.web.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.tmp.util.InstrumentedExecutor;
+import com.tmp.util.Threads;
+
+/**
+ * 控制器异步执行的配置
+ * <p>
+ * 查询在有界的queryExecutor中执行，不占用Tomcat的请求线程；队列满时返回503.
+ * tmp.async.threads：线程数；queue-capacity：队列容量；timeout：默认超时(毫秒)；
+ * shutdown-timeout：关闭时等待执行中任务的时间(秒).
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    @Value("${tmp.async.threads:16}")
+    private int threads;
+
+    @Value("${tmp.async.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${tmp.async.timeout:30000}")
+    private long timeout;
+
+    @Value("${tmp.async.shutdown-timeout:30}")
+    private int shutdownTimeout;
+
+    private InstrumentedExecutor queryExecutor;
+
+    /**
+     * 由本配置在容器关闭时关闭，见{@link #destroy()}
+     */
+    @Bean(destroyMethod = "")
+    public InstrumentedExecutor queryExecutor() {
+
+        queryExecutor = new InstrumentedExecutor("query", threads, queueCapacity);
+        return queryExecutor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+
+        // 返回Callable的控制器也使用同一个线程池
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(queryExecutor()));
+        configurer.setDefaultTimeout(timeout);
+    }
+
+    /**
+     * 容器关闭时先停止接收新任务，等待执行中的查询完成，超时后中断
+     */
+    @Override
+    public void destroy() {
+
+        if (queryExecutor != null) {
+            logger.info("关闭线程池: {}", queryExecutor);
+            Threads.gracefulShutdown(queryExecutor, shutdownTimeout, shutdownTimeout, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tmp.web.config;
+
+import java.util.Arrays;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.tmp.web.filter.CompressionFilter;
+
+/**
+ * 响应压缩的配置
+ * <p>
+ * tmp.compression.enabled=false关闭；min-size：默认的阈值(字节)；level：压缩级别；max-pooled：Deflater、缓冲区池的大小；
+ * mime-types：压缩的Content-Type，可以用"类型:阈值"单独设置阈值.
+ * 不要同时开启server.compression.enabled，否则会压缩两次.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tmp.compression", name = "enabled", matchIfMissing = true)
+public class CompressionConfig {
+
+    @Value("${tmp.compression.min-size:2048}")
+    private int minSize;
+
+    @Value("${tmp.compression.level:6}")
+    private int level;
+
+    @Value("${tmp.compression.max-pooled:32}")
+    private int maxPooled;
+
+    @Value("${tmp.compression.mime-types:application/json,application/javascript,application/xml,text/*}")
+    private String[] mimeTypes;
+
+    @Bean
+    public FilterRegistrationBean<CompressionFilter> compressionFilterRegistration() {
+
+        FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<>(
+                new CompressionFilter(minSize, level, maxPooled, Arrays.asList(mimeTypes)));
+        registration.addUrlPatterns("/*");
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        // 在CharacterEncodingFilter之后，其他过滤器之前，包住所有输出
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
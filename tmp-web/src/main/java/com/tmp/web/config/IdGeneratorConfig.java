@@ -0,0 +1,26 @@
+package com.tmp.web.config;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import com.tmp.util.IdGenerator;
+
+/**
+ * IdGenerator的配置
+ * <p>
+ * tmp.id.worker-id：Snowflake的worker id，0-1023，多个节点必须不同.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Value("${tmp.id.worker-id:0}")
+    private int workerId;
+
+    @PostConstruct
+    public void init() {
+
+        IdGenerator.setWorkerId(workerId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.tmp.web.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.tmp.util.InstrumentedExecutor;
+import com.tmp.util.PasswordService;
+import com.tmp.util.Pbkdf2PasswordHasher;
+import com.tmp.util.Sha1PasswordHasher;
+import com.tmp.util.Threads;
+
+/**
+ * 密码散列的配置
+ * <p>
+ * 散列在有界的passwordExecutor中执行，队列满时返回503.
+ * tmp.password.threads：线程数，0为CPU核数；queue-capacity：队列容量；
+ * pbkdf2-iterations：PBKDF2的迭代次数，已有散列低于该次数时登录成功后重新散列；
+ * shutdown-timeout：关闭时等待执行中任务的时间(秒).
+ */
+@Configuration
+public class PasswordConfig implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordConfig.class);
+
+    @Value("${tmp.password.threads:0}")
+    private int threads;
+
+    @Value("${tmp.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${tmp.password.pbkdf2-iterations:" + Pbkdf2PasswordHasher.DEFAULT_ITERATIONS + "}")
+    private int iterations;
+
+    @Value("${tmp.password.shutdown-timeout:10}")
+    private int shutdownTimeout;
+
+    private InstrumentedExecutor passwordExecutor;
+
+    /**
+     * 由本配置在容器关闭时关闭，见{@link #destroy()}
+     */
+    @Bean(destroyMethod = "")
+    public InstrumentedExecutor passwordExecutor() {
+
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        passwordExecutor = new InstrumentedExecutor("password", n, queueCapacity);
+        return passwordExecutor;
+    }
+
+    /**
+     * 新密码使用PBKDF2-HMAC-SHA256，EncryptionUtil生成的已有散列仍可校验
+     */
+    @Bean
+    public PasswordService passwordService() {
+        return new PasswordService(passwordExecutor(), new Pbkdf2PasswordHasher(iterations), new Sha1PasswordHasher());
+    }
+
+    @Override
+    public void destroy() {
+
+        if (passwordExecutor != null) {
+            logger.info("关闭线程池: {}", passwordExecutor);
+            Threads.gracefulShutdown(passwordExecutor, shutdownTimeout, shutdownTimeout, TimeUnit.SECONDS);
+        }
+    }
+}
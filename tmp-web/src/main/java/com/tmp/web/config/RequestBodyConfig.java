@@ -0,0 +1,41 @@
+package com.tmp.web.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.tmp.web.filter.HttpServletRequestReplacedFilter;
+
+/**
+ * 请求体可重复读取的配置
+ * <p>
+ * tmp.request-body.enabled=false关闭；memory-threshold：内存中缓存的上限(字节)，超过时写入临时文件；
+ * max-pooled：缓冲区池的大小；max-size：请求体的上限(字节).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tmp.request-body", name = "enabled", matchIfMissing = true)
+public class RequestBodyConfig {
+
+    @Value("${tmp.request-body.memory-threshold:65536}")
+    private int memoryThreshold;
+
+    @Value("${tmp.request-body.max-pooled:64}")
+    private int maxPooled;
+
+    @Value("${tmp.request-body.max-size:10485760}")
+    private long maxSize;
+
+    @Bean
+    public FilterRegistrationBean<HttpServletRequestReplacedFilter> requestReplacedFilterRegistration() {
+
+        FilterRegistrationBean<HttpServletRequestReplacedFilter> registration = new FilterRegistrationBean<>(
+                new HttpServletRequestReplacedFilter(memoryThreshold, maxPooled, maxSize));
+        registration.addUrlPatterns("/*");
+        // 在CharacterEncodingFilter之后、XssFilter之前
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
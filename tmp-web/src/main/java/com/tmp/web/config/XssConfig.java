@@ -0,0 +1,52 @@
+package com.tmp.web.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.fasterxml.jackson.databind.Module;
+import com.tmp.util.XssHtmlFilter;
+import com.tmp.web.filter.XssFilter;
+import com.tmp.web.filter.XssJsonModule;
+
+/**
+ * XSS过滤的配置
+ * <p>
+ * tmp.xss.enabled=false关闭；tmp.xss.excludes配置不过滤的参数名、JSON属性名，多个用逗号分隔.
+ * 使用XssHtmlFilter的默认策略.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tmp.xss", name = "enabled", matchIfMissing = true)
+public class XssConfig {
+
+    @Value("${tmp.xss.excludes:}")
+    private String[] excludes;
+
+    @Bean
+    public FilterRegistrationBean<XssFilter> xssFilterRegistration() {
+
+        FilterRegistrationBean<XssFilter> registration = new FilterRegistrationBean<>(
+                new XssFilter(XssHtmlFilter.getDefault(), getExcludes()));
+        registration.addUrlPatterns("/*");
+        // 在CharacterEncodingFilter之后
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    @Bean
+    public Module xssJsonModule() {
+        return new XssJsonModule(XssHtmlFilter.getDefault(), getExcludes());
+    }
+
+    private Set<String> getExcludes() {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(excludes)));
+    }
+}
@@ -1,30 +1,77 @@
 package com.tmp.web.controller;
 
+import java.util.Iterator;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.google.common.collect.Iterators;
+import com.tmp.jpa.data.KeysetCursor;
+import com.tmp.jpa.data.KeysetSlice;
+import com.tmp.jpa.data.Servlets;
+import com.tmp.model.Test1;
 import com.tmp.service.Test1Service;
 import com.tmp.web.base.SimpleRestController;
 
 @RestController
 public class TestController extends SimpleRestController {
+
+	private static final int EXPORT_BATCH_SIZE = 500;
+	private static final int EXPORT_MAX_ROWS = 10000;
 	
 	@Autowired
 	Test1Service test1Service;
 
+	/**
+	 * 分页查询：数据没有变化时返回304，不再查询、序列化
+	 */
 	@RequestMapping("/test1")
-	public Page test(HttpServletRequest request,@PageableDefault(sort = { "bb" }, direction = Sort.Direction.DESC) Pageable pageRequest) {
+	public Page test(HttpServletRequest request, HttpServletResponse response, @PageableDefault(sort = { "bb" }, direction = Sort.Direction.DESC) Pageable pageRequest) {
 		Map<String,Object> searchParams = getSearchParams(request);
+		if (checkNotModified(request, response, test1Service.findDataVersion(searchParams))) {
+			return null;
+		}
 		Page page = test1Service.test(searchParams, pageRequest);
 		return page;
 	}
+
+	/**
+	 * 分页查询，在查询线程池中执行，不占用请求线程，超过10秒返回503
+	 */
+	@RequestMapping("/test1/async")
+	public DeferredResult<Page<Test1>> testAsync(HttpServletRequest request, @PageableDefault(sort = { "bb" }, direction = Sort.Direction.DESC) Pageable pageRequest) {
+		Map<String,Object> searchParams = getSearchParams(request);
+		return async(10000, () -> test1Service.test(searchParams, pageRequest));
+	}
+
+	/**
+	 * 导出：按键集分页每次读取500条，边读边以流的方式输出json数组，不查询总数，最多10000条
+	 */
+	@RequestMapping("/test1/export")
+	public void export(HttpServletRequest request, HttpServletResponse response, @SortDefault(sort = { "bb" }, direction = Sort.Direction.DESC) Sort sort) {
+		Map<String,Object> searchParams = getSearchParams(request);
+		Iterator<Test1> rows = test1Service.iterate(searchParams, sort, EXPORT_BATCH_SIZE);
+		Servlets.responseJsonUtf8Rows(response, Iterators.limit(rows, EXPORT_MAX_ROWS));
+	}
+
+	/**
+	 * 滚动加载：键集分页，不查询总数，翻页时传入上一页返回的next_cursor
+	 */
+	@RequestMapping("/test1/scroll")
+	public KeysetSlice scroll(HttpServletRequest request, @RequestParam(required = false) String cursor, @PageableDefault(sort = { "bb" }, direction = Sort.Direction.DESC) Pageable pageRequest) {
+		Map<String,Object> searchParams = getSearchParams(request);
+		return test1Service.findSlice(searchParams, KeysetCursor.decode(cursor), pageRequest.getPageSize(), pageRequest.getSort());
+	}
 }
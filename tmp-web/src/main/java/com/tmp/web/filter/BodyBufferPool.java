@@ -0,0 +1,35 @@
+package com.tmp.web.filter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 缓存请求体的byte[]池
+ * <p>
+ * 每个byte[]的大小相同，即请求体在内存中缓存的上限；池中最多保留maxPooled个，池空时新建，池满时丢弃.
+ */
+final class BodyBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    BodyBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+}
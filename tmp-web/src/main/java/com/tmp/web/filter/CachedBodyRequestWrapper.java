@@ -0,0 +1,279 @@
+package com.tmp.web.filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.google.common.io.ByteStreams;
+import com.tmp.jpa.data.CachedRequestBody;
+
+/**
+ * 请求体可以重复读取的Request
+ * <p>
+ * 第一次读取时把请求体读入池中的byte[]，超过byte[]大小时写入临时文件；之后的getInputStream、getReader、
+ * {@link #getBody()}都从缓存读取. 没有Content-Length(chunked)的请求同样支持.
+ * 请求结束后由{@link HttpServletRequestReplacedFilter}调用{@link #release()}归还byte[]、删除临时文件，
+ * 因此{@link #getBody()}返回的ByteBuffer只能在请求处理期间使用.
+ * <p>
+ * 读取失败(超过上限、临时文件出错)后容器的输入流已经读过，之后的读取都抛出第一次的异常，不会得到空的或不完整的请求体；
+ * release之后的读取抛出IllegalStateException. 超过上限时抛出{@link BodyTooLargeException}(413).
+ */
+public class CachedBodyRequestWrapper extends HttpServletRequestWrapper implements CachedRequestBody {
+
+    private static final String TEMP_FILE_PREFIX = "request-body-";
+
+    private final BodyBufferPool pool;
+    private final long maxSize;
+
+    private boolean loaded;
+    private IOException failure;
+    private boolean released;
+    // 在内存中时
+    private byte[] buffer;
+    private int length;
+    // 写入临时文件时
+    private Path file;
+    private long fileSize;
+
+    CachedBodyRequestWrapper(HttpServletRequest request, BodyBufferPool pool, long maxSize) {
+        super(request);
+        this.pool = pool;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        load();
+        return new CachedServletInputStream(openStream());
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String encoding = getCharacterEncoding();
+        return new BufferedReader(new InputStreamReader(getInputStream(),
+                encoding != null ? encoding : StandardCharsets.ISO_8859_1.name()));
+    }
+
+    @Override
+    public ByteBuffer getBody() throws IOException {
+
+        load();
+        if (file == null) {
+            return ByteBuffer.wrap(buffer, 0, length).slice().asReadOnlyBuffer();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 映射后关闭channel不影响读取
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+    }
+
+    @Override
+    public long getBodyLength() throws IOException {
+        load();
+        return file == null ? length : fileSize;
+    }
+
+    /**
+     * 归还byte[]、删除临时文件，之后不能再读取
+     */
+    void release() {
+
+        released = true;
+        discard();
+    }
+
+    /**
+     * 请求体是否超过上限
+     */
+    boolean isTooLarge() {
+        return failure instanceof BodyTooLargeException;
+    }
+
+    private void discard() {
+
+        pool.release(buffer);
+        buffer = null;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+            file = null;
+        }
+    }
+
+    private InputStream openStream() throws IOException {
+        return file == null ? new ByteArrayInputStream(buffer, 0, length) : Files.newInputStream(file);
+    }
+
+    private void load() throws IOException {
+
+        if (released) {
+            throw new IllegalStateException("Request body has been released");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (loaded) {
+            return;
+        }
+        try {
+            read();
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        loaded = true;
+    }
+
+    private void read() throws IOException {
+
+        if (getContentLengthLong() > maxSize) {
+            throw new BodyTooLargeException(maxSize);
+        }
+
+        InputStream in = super.getInputStream();
+        byte[] buf = pool.acquire();
+        try {
+            int n = ByteStreams.read(in, buf, 0, buf.length);
+            int next = (n < buf.length) ? -1 : in.read();
+            if (next == -1) {
+                buffer = buf;
+                length = n;
+                buf = null;
+            } else {
+                spill(in, buf, n, next);
+            }
+        } finally {
+            // 写入临时文件后byte[]立即归还
+            pool.release(buf);
+        }
+    }
+
+    /**
+     * 超过内存缓存的上限，已读入的内容及剩余的请求体写入临时文件
+     */
+    private void spill(InputStream in, byte[] buf, int n, int next) throws IOException {
+
+        Path temp = Files.createTempFile(TEMP_FILE_PREFIX, ".tmp");
+        file = temp;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            out.write(buf, 0, n);
+            out.write(next);
+            long size = n + 1L;
+            int read;
+            while (size <= maxSize && (read = in.read(buf)) != -1) {
+                size += read;
+                out.write(buf, 0, read);
+            }
+            if (size > maxSize) {
+                throw new BodyTooLargeException(maxSize);
+            }
+            fileSize = size;
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * 请求体超过上限，控制器中读取时返回413
+     */
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public static final class BodyTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(long maxSize) {
+            super("Request body exceeds " + maxSize + " bytes");
+        }
+    }
+
+    private static final class CachedServletInputStream extends ServletInputStream {
+
+        private final InputStream in;
+        private boolean finished;
+        private long count;
+
+        CachedServletInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            finished = b == -1;
+            if (!finished) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            finished = n == -1;
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+
+            // 请求体已在内存或临时文件中，随时可读：立即通知可读，读完后通知结束；
+            // 监听器没有读到结尾又不再读取时停止通知，与容器中数据未到达时一样
+            try {
+                long before;
+                do {
+                    before = count;
+                    readListener.onDataAvailable();
+                } while (!finished && count > before);
+                if (finished) {
+                    readListener.onAllDataRead();
+                }
+            } catch (Throwable t) {
+                readListener.onError(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.tmp.web.filter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * 按Accept-Encoding压缩响应体(gzip优先，其次deflate)
+ * <p>
+ * 只压缩配置的Content-Type，每个类型可以有自己的阈值，响应体不超过阈值时不压缩；
+ * 图片(如ImageUtils生成的jpeg)、zip等已压缩的类型不在列表中，直接输出.
+ * 带Range的请求不压缩. Deflater、缓冲区都来自池，不为每个响应新建.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+    /**
+     * 压缩输出的缓冲区大小
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    /**
+     * 内容编码
+     */
+    enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        String getToken() {
+            return token;
+        }
+    }
+
+    private final int minSize;
+    // Content-Type(不含参数) -> 阈值，"text/*"匹配所有text类型
+    private final Map<String, Integer> thresholds = new HashMap<>();
+
+    private final DeflaterPool gzipDeflaters;
+    private final DeflaterPool deflateDeflaters;
+    private final BodyBufferPool buffers;
+    private final BodyBufferPool outputBuffers;
+
+    /**
+     * @param minSize   默认的阈值(字节)，响应体超过时才压缩
+     * @param level     压缩级别，1-9，-1为默认(6)
+     * @param maxPooled 池中最多保留的Deflater、缓冲区数量
+     * @param mimeTypes 压缩的Content-Type，可以带阈值，如"application/json"、"text/*"、"text/html:4096"；
+     *                  结构化后缀+json、+xml的类型总是压缩
+     */
+    public CompressionFilter(int minSize, int level, int maxPooled, Collection<String> mimeTypes) {
+
+        this.minSize = minSize;
+        int maxThreshold = minSize;
+        for (String mimeType : mimeTypes) {
+            String type = StringUtils.substringBefore(mimeType, ":").trim().toLowerCase(Locale.ENGLISH);
+            String size = StringUtils.substringAfter(mimeType, ":").trim();
+            int threshold = size.isEmpty() ? minSize : Integer.parseInt(size);
+            if (!type.isEmpty()) {
+                thresholds.put(type, threshold);
+                maxThreshold = Math.max(maxThreshold, threshold);
+            }
+        }
+
+        this.gzipDeflaters = new DeflaterPool(level, true, maxPooled);
+        this.deflateDeflaters = new DeflaterPool(level, false, maxPooled);
+        // 缓存未超过阈值的响应体，按最大的阈值预分配
+        this.buffers = new BodyBufferPool(Math.max(maxThreshold, 1), maxPooled);
+        this.outputBuffers = new BodyBufferPool(OUTPUT_BUFFER_SIZE, maxPooled);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // 异步请求在最后一次dispatch结束时完成压缩
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        CompressionResponseWrapper wrapper = WebUtils.getNativeResponse(response, CompressionResponseWrapper.class);
+        if (wrapper == null) {
+            Encoding encoding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (encoding == null || request.getHeader(HttpHeaders.RANGE) != null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            wrapper = new CompressionResponseWrapper(response, this, encoding);
+            response = wrapper;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                wrapper.finish();
+            }
+        }
+    }
+
+    /**
+     * 该Content-Type的阈值，不压缩时返回-1
+     */
+    int getThreshold(String contentType) {
+
+        if (contentType == null) {
+            return -1;
+        }
+        String type = StringUtils.substringBefore(contentType, ";").trim().toLowerCase(Locale.ENGLISH);
+        Integer threshold = thresholds.get(type);
+        if (threshold == null) {
+            threshold = thresholds.get(StringUtils.substringBefore(type, "/") + "/*");
+        }
+        if (threshold == null && (type.endsWith("+json") || type.endsWith("+xml"))) {
+            threshold = minSize;
+        }
+        return threshold == null ? -1 : threshold;
+    }
+
+    BodyBufferPool getBuffers() {
+        return buffers;
+    }
+
+    BodyBufferPool getOutputBuffers() {
+        return outputBuffers;
+    }
+
+    Deflater acquireDeflater(Encoding encoding) {
+        return (encoding == Encoding.GZIP ? gzipDeflaters : deflateDeflaters).acquire();
+    }
+
+    void releaseDeflater(Encoding encoding, Deflater deflater) {
+        (encoding == Encoding.GZIP ? gzipDeflaters : deflateDeflaters).release(deflater);
+    }
+
+    /**
+     * 按Accept-Encoding选择编码，gzip优先；q=0表示不接受
+     */
+    static Encoding negotiate(String acceptEncoding) {
+
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return null;
+        }
+
+        boolean deflate = false;
+        boolean wildcard = false;
+        boolean gzipRejected = false;
+        for (String part : StringUtils.split(acceptEncoding, ',')) {
+            String coding = StringUtils.substringBefore(part, ";").trim();
+            boolean accepted = !isZeroQuality(StringUtils.substringAfter(part, ";"));
+            if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                if (accepted) {
+                    return Encoding.GZIP;
+                }
+                gzipRejected = true;
+            } else if ("deflate".equalsIgnoreCase(coding)) {
+                deflate = accepted;
+            } else if ("*".equals(coding)) {
+                wildcard = accepted;
+            }
+        }
+
+        if (wildcard && !gzipRejected) {
+            return Encoding.GZIP;
+        }
+        return deflate ? Encoding.DEFLATE : null;
+    }
+
+    private static boolean isZeroQuality(String params) {
+
+        for (String param : StringUtils.split(params, ';')) {
+            String name = StringUtils.substringBefore(param, "=").trim();
+            if ("q".equalsIgnoreCase(name)) {
+                try {
+                    return Double.parseDouble(StringUtils.substringAfter(param, "=").trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
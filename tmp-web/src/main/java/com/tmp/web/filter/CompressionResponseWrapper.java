@@ -0,0 +1,445 @@
+package com.tmp.web.filter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * 压缩响应体的包装
+ * <p>
+ * 第一次写入时按Content-Type取得阈值：不压缩的类型直接写入原响应；
+ * 其他类型先缓存在池中预分配的byte[]里，超过阈值时开始压缩，到结束时仍不超过阈值则原样输出并设置Content-Length.
+ * 处理方设置的Content-Length在确定不压缩时才写入原响应.
+ */
+final class CompressionResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final byte[] GZIP_HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private enum State {
+        // 还未写入
+        INITIAL,
+        // 缓存中，还未决定是否压缩
+        BUFFERING,
+        COMPRESSING,
+        // 不压缩，直接写入原响应
+        PASSTHROUGH,
+        // 已结束，或sendError/sendRedirect后由容器输出
+        CLOSED
+    }
+
+    private final CompressionFilter filter;
+    private final CompressionFilter.Encoding encoding;
+
+    private State state = State.INITIAL;
+    private long contentLength = -1;
+    private int threshold;
+
+    private byte[] buffer;
+    private int count;
+
+    private Deflater deflater;
+    private byte[] output;
+    private CRC32 crc;
+    private boolean headerWritten;
+
+    private CompressionOutputStream stream;
+    private boolean streamUsed;
+    private PrintWriter writer;
+
+    CompressionResponseWrapper(HttpServletResponse response, CompressionFilter filter, CompressionFilter.Encoding encoding) {
+        super(response);
+        this.filter = filter;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        streamUsed = true;
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (streamUsed) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (interceptsLength()) {
+            contentLength = len;
+        } else {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null && interceptsLength()) {
+            contentLength = Long.parseLong(value.trim());
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null && interceptsLength()) {
+            contentLength = Long.parseLong(value.trim());
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && interceptsLength()) {
+            contentLength = value;
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        // 缓存中的内容等到超过阈值或结束时再输出，否则无法决定是否压缩
+        if (state == State.COMPRESSING || state == State.PASSTHROUGH) {
+            stream.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        // 原响应还未提交，头已被清空，重新决定是否压缩
+        if (state != State.CLOSED) {
+            release();
+            state = State.INITIAL;
+            count = 0;
+        }
+        contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        // 原响应还未提交，已输出的内容被丢弃，头保留
+        if (state == State.BUFFERING) {
+            count = 0;
+        } else if (state == State.COMPRESSING) {
+            deflater.reset();
+            if (crc != null) {
+                crc.reset();
+            }
+            headerWritten = false;
+        }
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        release();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        release();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        release();
+        super.sendRedirect(location);
+    }
+
+    /**
+     * 输出缓存中的内容或压缩的结尾，释放缓冲区、Deflater；可重复调用
+     */
+    void finish() throws IOException {
+
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+
+        try {
+            switch (state) {
+                case INITIAL:
+                    // 没有写入响应体(HEAD请求、容器sendfile等)，保留处理方设置的Content-Length
+                    if (contentLength >= 0) {
+                        super.setContentLengthLong(contentLength);
+                    }
+                    break;
+                case BUFFERING:
+                    super.setContentLengthLong(count);
+                    getResponse().getOutputStream().write(buffer, 0, count);
+                    break;
+                case COMPRESSING:
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        writeDeflated(deflater.deflate(output, 0, output.length));
+                    }
+                    if (encoding == CompressionFilter.Encoding.GZIP) {
+                        writeTrailer();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            release();
+        }
+    }
+
+    // ====================
+
+    private CompressionOutputStream stream() {
+        if (stream == null) {
+            stream = new CompressionOutputStream();
+        }
+        return stream;
+    }
+
+    /**
+     * 还未决定不压缩时，Content-Length不写入原响应
+     */
+    private boolean interceptsLength() {
+        return state == State.INITIAL || state == State.BUFFERING || state == State.COMPRESSING;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return;
+        }
+        if (state == State.INITIAL) {
+            start();
+        }
+
+        switch (state) {
+            case BUFFERING:
+                if (count + len <= threshold) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                startCompression();
+                deflate(buffer, 0, count);
+                releaseBuffer();
+                deflate(b, off, len);
+                return;
+            case COMPRESSING:
+                deflate(b, off, len);
+                return;
+            case PASSTHROUGH:
+                getResponse().getOutputStream().write(b, off, len);
+                return;
+            default:
+                throw new IOException("response has been closed");
+        }
+    }
+
+    /**
+     * 第一次写入时按Content-Type决定：不压缩、先缓存、或直接压缩
+     */
+    private void start() throws IOException {
+
+        threshold = (getHeader(HttpHeaders.CONTENT_ENCODING) == null) ? filter.getThreshold(getContentType()) : -1;
+        if (threshold < 0 || (contentLength >= 0 && contentLength <= threshold)) {
+            state = State.PASSTHROUGH;
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+        } else if (threshold > 0) {
+            state = State.BUFFERING;
+            buffer = filter.getBuffers().acquire();
+        } else {
+            startCompression();
+        }
+    }
+
+    private void startCompression() throws IOException {
+
+        state = State.COMPRESSING;
+        super.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+        String vary = getHeader(HttpHeaders.VARY);
+        if (vary == null) {
+            super.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        } else if (!StringUtils.containsIgnoreCase(vary, HttpHeaders.ACCEPT_ENCODING) && !"*".equals(vary.trim())) {
+            super.setHeader(HttpHeaders.VARY, vary + ", " + HttpHeaders.ACCEPT_ENCODING);
+        }
+        // 压缩后的内容与原内容字节不同，强ETag改为弱ETag
+        String etag = getHeader(HttpHeaders.ETAG);
+        if (etag != null && etag.startsWith("\"")) {
+            super.setHeader(HttpHeaders.ETAG, "W/" + etag);
+        }
+
+        headerWritten = false;
+        deflater = filter.acquireDeflater(encoding);
+        output = filter.getOutputBuffers().acquire();
+        if (encoding == CompressionFilter.Encoding.GZIP) {
+            crc = new CRC32();
+        }
+    }
+
+    private void deflate(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            writeDeflated(deflater.deflate(output, 0, output.length));
+        }
+    }
+
+    /**
+     * 把已压缩的部分全部输出，用于flush
+     */
+    private void syncFlush() throws IOException {
+
+        int n;
+        do {
+            n = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            writeDeflated(n);
+        } while (n == output.length);
+    }
+
+    private void writeDeflated(int n) throws IOException {
+        if (n > 0) {
+            writeHeader();
+            getResponse().getOutputStream().write(output, 0, n);
+        }
+    }
+
+    /**
+     * gzip的头，在第一次输出压缩内容前写入
+     */
+    private void writeHeader() throws IOException {
+        if (!headerWritten && crc != null) {
+            getResponse().getOutputStream().write(GZIP_HEADER);
+        }
+        headerWritten = true;
+    }
+
+    /**
+     * gzip的结尾：CRC32、原内容长度(模2^32)，小端
+     */
+    private void writeTrailer() throws IOException {
+
+        writeHeader();
+        byte[] trailer = new byte[8];
+        writeInt((int) crc.getValue(), trailer, 0);
+        writeInt((int) deflater.getBytesRead(), trailer, 4);
+        getResponse().getOutputStream().write(trailer);
+    }
+
+    private static void writeInt(int value, byte[] b, int offset) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >> 8);
+        b[offset + 2] = (byte) (value >> 16);
+        b[offset + 3] = (byte) (value >> 24);
+    }
+
+    private void release() {
+
+        state = State.CLOSED;
+        releaseBuffer();
+        if (deflater != null) {
+            filter.releaseDeflater(encoding, deflater);
+            deflater = null;
+        }
+        if (output != null) {
+            filter.getOutputBuffers().release(output);
+            output = null;
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            filter.getBuffers().release(buffer);
+            buffer = null;
+        }
+    }
+
+    private final class CompressionOutputStream extends ServletOutputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            CompressionResponseWrapper.this.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            CompressionResponseWrapper.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (state == State.COMPRESSING) {
+                syncFlush();
+            }
+            if (state == State.COMPRESSING || state == State.PASSTHROUGH) {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            getResponse().getOutputStream().close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            try {
+                getResponse().getOutputStream().setWriteListener(listener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
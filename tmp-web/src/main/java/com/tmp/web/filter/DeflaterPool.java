@@ -0,0 +1,40 @@
+package com.tmp.web.filter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Deflater池
+ * <p>
+ * Deflater持有本地内存，每个响应新建、等待GC回收的代价较高；用完reset后放回池中，池满时立即end释放本地内存.
+ */
+final class DeflaterPool {
+
+    private final int level;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> deflaters;
+
+    /**
+     * @param level     压缩级别
+     * @param nowrap    true时不输出zlib头、校验(gzip格式由调用方写入头、尾)
+     * @param maxPooled 池中最多保留的数量
+     */
+    DeflaterPool(int level, boolean nowrap, int maxPooled) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.deflaters = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    Deflater acquire() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
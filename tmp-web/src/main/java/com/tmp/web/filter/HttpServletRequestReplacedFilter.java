@@ -0,0 +1,105 @@
+package com.tmp.web.filter;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 把请求替换为请求体可以重复读取的{@link CachedBodyRequestWrapper}
+ * <p>
+ * 只处理有请求体(Content-Length大于0或chunked)的请求；表单、文件上传的请求体由容器解析参数，不替换.
+ * Content-Length超过上限时直接返回413；没有Content-Length(chunked)的请求读取时超过上限，同样返回413.
+ */
+public class HttpServletRequestReplacedFilter extends OncePerRequestFilter {
+
+    private final BodyBufferPool pool;
+    private final long maxSize;
+
+    /**
+     * @param memoryThreshold 请求体在内存中缓存的上限，超过时写入临时文件
+     * @param maxPooled       池中最多保留的缓冲区数量
+     * @param maxSize         请求体的上限
+     */
+    public HttpServletRequestReplacedFilter(int memoryThreshold, int maxPooled, long maxSize) {
+        this.pool = new BodyBufferPool(memoryThreshold, maxPooled);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+
+        boolean hasBody = request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+        String contentType = request.getContentType();
+        return !hasBody
+                || StringUtils.startsWithIgnoreCase(contentType, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                || StringUtils.startsWithIgnoreCase(contentType, MediaType.MULTIPART_FORM_DATA_VALUE);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (request.getContentLengthLong() > maxSize) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+
+        CachedBodyRequestWrapper wrapper = new CachedBodyRequestWrapper(request, pool, maxSize);
+        try {
+            filterChain.doFilter(wrapper, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            // 控制器中读取时由BodyTooLargeException上的@ResponseStatus处理，其他地方(过滤器、日志等)读取时在这里处理
+            if (!wrapper.isTooLarge() || response.isCommitted()) {
+                throw e;
+            }
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // 异步请求在结束时释放
+                request.getAsyncContext().addListener(new ReleaseListener(wrapper));
+            } else {
+                wrapper.release();
+            }
+        }
+    }
+
+    private static final class ReleaseListener implements AsyncListener {
+
+        private final CachedBodyRequestWrapper wrapper;
+
+        ReleaseListener(CachedBodyRequestWrapper wrapper) {
+            this.wrapper = wrapper;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            wrapper.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // 超时后仍会调用onComplete
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // 出错后仍会调用onComplete
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 再次startAsync时继续监听
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.tmp.web.filter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.tmp.util.XssHtmlFilter;
+
+/**
+ * 过滤请求参数中的XSS内容
+ * <p>
+ * 只包装请求，参数在被读取时才过滤，见{@link XssRequestWrapper}；
+ * JSON请求体由{@link XssJsonModule}在反序列化时逐个字符串过滤.
+ */
+public class XssFilter extends OncePerRequestFilter {
+
+    private final XssHtmlFilter xssHtmlFilter;
+    private final Set<String> excludes;
+
+    /**
+     * @param xssHtmlFilter 过滤器
+     * @param excludes      不过滤的参数名，如密码
+     */
+    public XssFilter(XssHtmlFilter xssHtmlFilter, Set<String> excludes) {
+        this.xssHtmlFilter = xssHtmlFilter;
+        this.excludes = excludes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        filterChain.doFilter(new XssRequestWrapper(request, xssHtmlFilter, excludes), response);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tmp.web.filter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.tmp.util.XssHtmlFilter;
+
+/**
+ * 反序列化JSON时过滤字符串值中的XSS内容
+ * <p>
+ * 注册为Spring Bean后由Spring Boot加入MVC使用的ObjectMapper. 请求体由Jackson边读边解析，
+ * 每个字符串值在解析出来时过滤，不需要把整个请求体读入内存再扫描；属性名不过滤.
+ */
+public class XssJsonModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param xssHtmlFilter 过滤器
+     * @param excludes      不过滤的属性名，如密码
+     */
+    public XssJsonModule(XssHtmlFilter xssHtmlFilter, Set<String> excludes) {
+        super("XssJsonModule");
+        addDeserializer(String.class, new XssStringDeserializer(xssHtmlFilter, excludes));
+    }
+
+    /**
+     * 字符串的反序列化，解析规则与Jackson默认的StringDeserializer一致
+     */
+    private static final class XssStringDeserializer extends StdScalarDeserializer<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient XssHtmlFilter xssHtmlFilter;
+        private final Set<String> excludes;
+
+        XssStringDeserializer(XssHtmlFilter xssHtmlFilter, Set<String> excludes) {
+            super(String.class);
+            this.xssHtmlFilter = xssHtmlFilter;
+            this.excludes = excludes;
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+            String value = StringDeserializer.instance.deserialize(p, ctxt);
+            if (value == null || excludes.contains(p.getCurrentName())) {
+                return value;
+            }
+            return xssHtmlFilter.filter(value);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.tmp.web.filter;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import com.tmp.util.XssHtmlFilter;
+
+/**
+ * 过滤请求参数中XSS内容的Request
+ * <p>
+ * 参数值在第一次通过getParameter、getParameterValues、getParameterMap读取时才过滤，结果按参数名缓存，
+ * 没有被读取的参数不过滤. 不在线程间共享.
+ */
+public class XssRequestWrapper extends HttpServletRequestWrapper {
+
+    private final XssHtmlFilter xssHtmlFilter;
+    private final Set<String> excludes;
+
+    // 参数名 -> 过滤后的值
+    private final Map<String, String[]> sanitized = new HashMap<>();
+    private Map<String, String[]> parameterMap;
+
+    /**
+     * @param request       原始请求
+     * @param xssHtmlFilter 过滤器
+     * @param excludes      不过滤的参数名，如密码
+     */
+    public XssRequestWrapper(HttpServletRequest request, XssHtmlFilter xssHtmlFilter, Set<String> excludes) {
+        super(request);
+        this.xssHtmlFilter = xssHtmlFilter;
+        this.excludes = excludes;
+    }
+
+    @Override
+    public String getParameter(String name) {
+
+        String[] values = getParameterValues(name);
+        return (values == null || values.length == 0) ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+
+        if (name == null || excludes.contains(name)) {
+            return super.getParameterValues(name);
+        }
+
+        String[] values = sanitized.get(name);
+        if (values == null) {
+            values = sanitize(super.getParameterValues(name));
+            if (values != null) {
+                sanitized.put(name, values);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+
+        if (parameterMap == null) {
+            parameterMap = new SanitizedParameterMap(super.getParameterMap());
+        }
+        return parameterMap;
+    }
+
+    /**
+     * 没有需要过滤的内容时返回原数组
+     */
+    private String[] sanitize(String[] values) {
+
+        if (values == null) {
+            return null;
+        }
+
+        String[] result = values;
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            String clean = (value == null) ? null : xssHtmlFilter.filter(value);
+            if (clean != value) {
+                if (result == values) {
+                    result = values.clone();
+                }
+                result[i] = clean;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 参数Map的只读视图，值在读取时过滤
+     */
+    private final class SanitizedParameterMap extends AbstractMap<String, String[]> {
+
+        private final Map<String, String[]> raw;
+
+        SanitizedParameterMap(Map<String, String[]> raw) {
+            this.raw = Collections.unmodifiableMap(raw);
+        }
+
+        @Override
+        public String[] get(Object key) {
+            return (key instanceof String && raw.containsKey(key)) ? getParameterValues((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return raw.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return raw.size();
+        }
+
+        @Override
+        public Set<Entry<String, String[]>> entrySet() {
+
+            return new AbstractSet<Entry<String, String[]>>() {
+
+                @Override
+                public Iterator<Entry<String, String[]>> iterator() {
+
+                    Iterator<String> names = raw.keySet().iterator();
+                    return new Iterator<Entry<String, String[]>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String[]> next() {
+                            String name = names.next();
+                            return new SimpleImmutableEntry<>(name, getParameterValues(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return raw.size();
+                }
+            };
+        }
+    }
+}